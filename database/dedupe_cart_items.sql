@@ -0,0 +1,38 @@
+-- Gộp các dòng trùng (user_id, book_id) trong cart_items rồi thêm unique constraint
+-- Chạy trước khi deploy phiên bản có uk_cart_items_user_book (Hibernate không tự thêm được constraint khi còn dữ liệu trùng)
+BEGIN;
+
+-- Dòng cũ nhất của mỗi cặp giữ lại tổng số lượng và tổng giá trị của các dòng trùng
+WITH grouped AS (
+    SELECT id,
+           ROW_NUMBER() OVER (PARTITION BY user_id, book_id ORDER BY created_at, id) AS rn,
+           SUM(quantity) OVER (PARTITION BY user_id, book_id) AS total_quantity,
+           SUM(total_price) OVER (PARTITION BY user_id, book_id) AS total_value
+    FROM cart_items
+)
+UPDATE cart_items ci
+SET quantity = g.total_quantity,
+    total_price = g.total_value,
+    updated_at = now()
+FROM grouped g
+WHERE ci.id = g.id
+  AND g.rn = 1
+  AND g.total_quantity <> ci.quantity;
+
+-- Xóa các dòng trùng còn lại
+DELETE FROM cart_items ci
+USING cart_items keep
+WHERE ci.user_id = keep.user_id
+  AND ci.book_id = keep.book_id
+  AND (keep.created_at, keep.id) < (ci.created_at, ci.id);
+
+ALTER TABLE cart_items DROP CONSTRAINT IF EXISTS uk_cart_items_user_book;
+ALTER TABLE cart_items ADD CONSTRAINT uk_cart_items_user_book UNIQUE (user_id, book_id);
+
+-- Unique index trên (user_id, book_id) đã phục vụ được truy vấn theo user_id
+DROP INDEX IF EXISTS idx_cart_items_user_id;
+
+COMMIT;
+
+-- Kiểm tra cấu trúc bảng sau khi cập nhật
+-- \d cart_items
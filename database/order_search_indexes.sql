@@ -0,0 +1,16 @@
+-- Index phục vụ tìm kiếm đơn hàng ở trang quản trị (OrderServiceImpl.adminSearchSpec)
+-- Tìm gần đúng dùng LOWER(cột) LIKE '%...%' nên cần trigram GIN trên đúng biểu thức đó;
+-- email dùng so khớp chính xác theo LOWER(email). Hibernate không tạo được các index này, chạy thủ công một lần.
+CREATE EXTENSION IF NOT EXISTS pg_trgm;
+
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_orders_full_name_trgm ON orders USING gin (LOWER(full_name) gin_trgm_ops);
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_orders_email_trgm ON orders USING gin (LOWER(email) gin_trgm_ops);
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_orders_phone_trgm ON orders USING gin (LOWER(phone) gin_trgm_ops);
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_orders_address_trgm ON orders USING gin (LOWER(address) gin_trgm_ops);
+
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_orders_email_lower ON orders (LOWER(email));
+
+ANALYZE orders;
+
+-- Kiểm tra kế hoạch thực thi (phải thấy Bitmap Index Scan trên các index *_trgm)
+-- EXPLAIN ANALYZE SELECT * FROM orders WHERE LOWER(full_name) LIKE '%nguyen%' OR LOWER(address) LIKE '%nguyen%';
@@ -0,0 +1,39 @@
+package com.project2.BookStore.config;
+
+import com.project2.BookStore.exception.BadRequestException;
+import com.project2.BookStore.service.BookSearchService;
+import com.project2.BookStore.service.BookSuggestionService;
+import com.project2.BookStore.service.CategoryDirectoryService;
+import com.project2.BookStore.service.InventoryReservationService;
+import com.project2.BookStore.service.TopSellerService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.CommandLineRunner;
+import org.springframework.stereotype.Component;
+
+// Nạp các cấu trúc dữ liệu trong bộ nhớ của catalog (danh bạ danh mục, index tìm kiếm, gợi ý, bảng xếp hạng bán chạy,
+// lịch hết hạn giữ tồn kho) khi khởi động
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class CatalogIndexInitializer implements CommandLineRunner {
+    private final CategoryDirectoryService categoryDirectoryService;
+    private final BookSearchService bookSearchService;
+    private final TopSellerService topSellerService;
+    private final BookSuggestionService bookSuggestionService;
+    private final InventoryReservationService inventoryReservationService;
+
+    @Override
+    public void run(String... args) {
+        try {
+            categoryDirectoryService.reload();
+            bookSearchService.rebuild();
+            topSellerService.rebuild();
+            bookSuggestionService.rebuild();
+            inventoryReservationService.reload();
+        } catch (Exception e) {
+            log.error("Lỗi khi khởi tạo dữ liệu catalog trong bộ nhớ: {}", e.getMessage());
+            throw new BadRequestException("Không thể khởi tạo dữ liệu catalog: " + e.getMessage());
+        }
+    }
+}
@@ -86,6 +86,8 @@ public class SecurityConfig {
                             "/api/bookStore/user/register",
                             "/api/bookStore/book/simple",
                             "/api/bookStore/book/paged",
+                            "/api/bookStore/book/batch",
+                            "/api/bookStore/book/suggest",
                             "/api/bookStore/book/{id}",
                             "/api/bookStore/category",
                             "/api/bookStore/category/{id}",
@@ -123,8 +125,10 @@ public class SecurityConfig {
                             "/api/bookStore/orders/*/shipping",
                             "/api/bookStore/orders/*/delivered",
                             "/api/bookStore/orders/*/confirm",
+                            "/api/bookStore/orders/bulk-status",
                             "/api/bookStore/reviews/admin",
-                            "/api/bookStore/reviews/admin/*/status"
+                            "/api/bookStore/reviews/admin/*/status",
+                            "/api/bookStore/flash-sale/books/*"
                         ).hasRole("ADMIN")
                         
                         // APIs requiring authentication (no ADMIN role needed)
@@ -142,7 +146,9 @@ public class SecurityConfig {
                             "/api/bookStore/reviews",
                             "/api/bookStore/reviews/user",
                             "/api/bookStore/payments/vnpay",
-                            "/api/bookStore/payments/status/*"
+                            "/api/bookStore/payments/status/*",
+                            "/api/bookStore/flash-sale/orders",
+                            "/api/bookStore/flash-sale/tickets/*"
                         ).authenticated()
                         
                         // Review CRUD operations requiring authentication
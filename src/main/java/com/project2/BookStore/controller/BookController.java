@@ -4,17 +4,25 @@ import com.project2.BookStore.dto.*;
 import com.project2.BookStore.exception.BadRequestException;
 import com.project2.BookStore.model.Book;
 import com.project2.BookStore.service.BookService;
+import com.project2.BookStore.service.BookSuggestionService;
 import com.project2.BookStore.service.ImageProcessingService;
+import com.project2.BookStore.util.ETagUtil;
 import com.project2.BookStore.util.JwtUtil;
 import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import jakarta.validation.Valid;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 import org.springframework.web.multipart.MultipartFile;
+import java.io.BufferedOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
@@ -39,9 +47,15 @@ public class BookController {
     @Autowired
     private ImageProcessingService imageProcessingService;
 
+    @Autowired
+    private BookSuggestionService bookSuggestionService;
+
     @Autowired
     private JwtUtil jwtUtil;
 
+    @Autowired
+    private ObjectMapper objectMapper;
+
     @GetMapping("/simple")
     public ResponseEntity<ApiResponseDTO> getAllBooks() {
         try {
@@ -58,15 +72,68 @@ public class BookController {
         }
     }
 
+    // Xuất toàn bộ sách dạng NDJSON (mỗi dòng một sách), ghi thẳng ra response trong lúc đọc từ DB
+    @GetMapping(value = "/simple", params = "format=ndjson")
+    public void streamAllBooks(HttpServletResponse response) throws IOException {
+        log.info("Xuất danh sách tất cả sách dạng NDJSON");
+        response.setContentType("application/x-ndjson");
+        response.setCharacterEncoding(StandardCharsets.UTF_8.name());
+        OutputStream out = new BufferedOutputStream(response.getOutputStream());
+        try {
+            bookService.streamAllBooks(book -> {
+                try {
+                    out.write(objectMapper.writeValueAsBytes(book));
+                    out.write('\n');
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+            out.flush();
+        } catch (Exception e) {
+            log.error("Lỗi khi xuất danh sách sách dạng NDJSON: {}", e.getMessage(), e);
+            // Chỉ trả JSON lỗi được khi chưa gửi dữ liệu nào cho client
+            if (!response.isCommitted()) {
+                response.reset();
+                response.setStatus(HttpStatus.INTERNAL_SERVER_ERROR.value());
+                response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+                response.setCharacterEncoding(StandardCharsets.UTF_8.name());
+                objectMapper.writeValue(response.getOutputStream(),
+                    new ApiResponseDTO(false, "Lỗi server khi lấy danh sách sách"));
+            }
+        }
+    }
+
     @GetMapping("/paged")
     public ResponseEntity<ApiResponseDTO> getBooksPaged(
             @RequestParam(defaultValue = "0") @Min(0) int page,
             @RequestParam(defaultValue = "10") @Min(1) int size,
             @RequestParam(defaultValue = "createdAt") String sortBy,
-            @RequestParam(defaultValue = "desc") String sortDirection) {
+            @RequestParam(defaultValue = "desc") String sortDirection,
+            @RequestParam(defaultValue = "offset") String mode,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "false") boolean includeTotal,
+            WebRequest webRequest) {
         try {
-            log.info("Lấy danh sách sách phân trang - Trang: {}, Kích thước: {}, Sắp xếp: {}, Hướng: {}", 
-                page, size, sortBy, sortDirection);
+            log.info("Lấy danh sách sách phân trang - Trang: {}, Kích thước: {}, Sắp xếp: {}, Hướng: {}, Chế độ: {}", 
+                page, size, sortBy, sortDirection, mode);
+
+            // Kiểm tra If-None-Match/If-Modified-Since trước khi query trang dữ liệu
+            VersionStampDTO version = bookService.getCatalogVersion();
+            String etag = ETagUtil.weakETag(version, "books", page, size, sortBy, sortDirection, mode, cursor, includeTotal);
+            if (webRequest.checkNotModified(etag, version.lastModifiedMillis())) {
+                return ETagUtil.notModified(etag);
+            }
+
+            // Chế độ cursor: seek theo (sortBy, id), độ trễ không tăng theo độ sâu trang
+            if ("cursor".equalsIgnoreCase(mode) || cursor != null) {
+                CursorPageResponse<BookResponseDTO> books = bookService.getBooksByCursor(
+                    sortBy, sortDirection, cursor, size, includeTotal);
+                return ETagUtil.ok(etag, version).body(new ApiResponseDTO(
+                    true,
+                    "Lấy danh sách sách phân trang thành công",
+                    books
+                ));
+            }
 
             // Tạo Pageable với sort và đảm bảo page >= 0
             Pageable pageable = PageRequest.of(
@@ -78,7 +145,7 @@ public class BookController {
             Page<BookResponseDTO> books = bookService.getBooksPaged(pageable);
             
             // Sử dụng PageResponse để format dữ liệu
-            return ResponseEntity.ok(new ApiResponseDTO(
+            return ETagUtil.ok(etag, version).body(new ApiResponseDTO(
                 true, 
                 "Lấy danh sách sách phân trang thành công", 
                 new PageResponse<>(books)
@@ -93,12 +160,49 @@ public class BookController {
         }
     }
 
+    // Lấy nhiều sách trong một request (giỏ hàng, danh sách yêu thích, lịch sử đơn hàng...)
+    @GetMapping("/batch")
+    public ResponseEntity<ApiResponseDTO> getBooksByIds(@RequestParam List<String> ids) {
+        return getBooksBatch(ids);
+    }
+
+    // Dùng POST khi danh sách ID quá dài so với giới hạn độ dài URL
+    @PostMapping("/batch")
+    public ResponseEntity<ApiResponseDTO> getBooksByIdsPost(@Valid @RequestBody BookBatchRequest request) {
+        return getBooksBatch(request.getIds());
+    }
+
+    private ResponseEntity<ApiResponseDTO> getBooksBatch(List<String> ids) {
+        try {
+            log.info("Lấy thông tin {} sách theo lô", ids.size());
+            BookBatchResponseDTO result = bookService.getBooksByIds(ids);
+            return ResponseEntity.ok(new ApiResponseDTO(true, "Lấy thông tin sách thành công", result));
+        } catch (BadRequestException e) {
+            log.error("Lỗi khi lấy thông tin sách theo lô: {}", e.getMessage());
+            return ResponseEntity.badRequest().body(new ApiResponseDTO(false, e.getMessage()));
+        } catch (Exception e) {
+            log.error("Lỗi không xác định khi lấy thông tin sách theo lô: {}", e.getMessage(), e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                .body(new ApiResponseDTO(false, "Lỗi server khi lấy thông tin sách"));
+        }
+    }
+
     @GetMapping("/{id}")
-    public ResponseEntity<ApiResponseDTO> getBookById(@PathVariable @NotBlank String id) {
+    public ResponseEntity<ApiResponseDTO> getBookById(@PathVariable @NotBlank String id, WebRequest webRequest) {
         try {
             log.info("Lấy thông tin sách với ID: {}", id);
+            // Sách không tồn tại thì bỏ qua kiểm tra ETag để getBookById trả lỗi như bình thường
+            VersionStampDTO version = bookService.getBookVersion(id);
+            String etag = null;
+            if (!version.isEmpty()) {
+                etag = ETagUtil.weakETag(version, "book", id);
+                if (webRequest.checkNotModified(etag, version.lastModifiedMillis())) {
+                    return ETagUtil.notModified(etag);
+                }
+            }
+
             BookResponseDTO book = bookService.getBookById(id);
-            return ResponseEntity.ok(new ApiResponseDTO(true, "Lấy thông tin sách thành công", book));
+            return ETagUtil.ok(etag, version).body(new ApiResponseDTO(true, "Lấy thông tin sách thành công", book));
         } catch (BadRequestException e) {
             log.error("Lỗi khi lấy thông tin sách: {}", e.getMessage());
             return ResponseEntity.badRequest().body(new ApiResponseDTO(false, e.getMessage()));
@@ -248,9 +352,15 @@ public class BookController {
             @RequestParam(required = false) Boolean inStock,
             @RequestParam(defaultValue = "0") @Min(0) int page,
             @RequestParam(defaultValue = "10") @Min(1) int size,
-            @RequestParam(defaultValue = "createdAt") String sortBy,
-            @RequestParam(defaultValue = "desc") String sortDirection) {
+            @RequestParam(required = false) String sortBy,
+            @RequestParam(defaultValue = "desc") String sortDirection,
+            @RequestParam(defaultValue = "false") boolean facets,
+            @RequestParam(defaultValue = "false") boolean fuzzy) {
         try {
+            // Mặc định: có từ khóa thì xếp theo độ liên quan, không có thì theo ngày tạo
+            if (sortBy == null || sortBy.isBlank()) {
+                sortBy = keyword != null && !keyword.trim().isEmpty() ? "relevance" : "createdAt";
+            }
             log.info("Tìm kiếm sách với các tiêu chí - Keyword: {}, CategoryId: {}, MinPrice: {}, MaxPrice: {}, InStock: {}, SortBy: {}, SortDirection: {}, Page: {}, Size: {}",
                 keyword, categoryId, minPrice, maxPrice, inStock, sortBy, sortDirection, page, size);
 
@@ -266,9 +376,15 @@ public class BookController {
                 minPrice,
                 maxPrice,
                 inStock,
+                fuzzy,
                 pageable
             );
 
+            if (facets) {
+                SearchFacetsDTO searchFacets = bookService.getSearchFacets(keyword, categoryId, minPrice, maxPrice, inStock, fuzzy);
+                return ResponseEntity.ok(new ApiResponseDTO(true, "Tìm kiếm sách thành công",
+                    new BookSearchResponse(result, searchFacets)));
+            }
             return ResponseEntity.ok(new ApiResponseDTO(true, "Tìm kiếm sách thành công", new PageResponse<>(result)));
         } catch (BadRequestException e) {
             log.error("Lỗi khi tìm kiếm sách: {}", e.getMessage());
@@ -280,6 +396,21 @@ public class BookController {
         }
     }
 
+    // Gợi ý tên sách/tác giả khi người dùng đang gõ, trả lời hoàn toàn từ bộ nhớ
+    @GetMapping("/suggest")
+    public ResponseEntity<ApiResponseDTO> suggestBooks(
+            @RequestParam(defaultValue = "") String q,
+            @RequestParam(defaultValue = "10") @Min(1) int limit) {
+        try {
+            List<BookSuggestionDTO> suggestions = bookSuggestionService.suggest(q, Math.min(limit, 50));
+            return ResponseEntity.ok(new ApiResponseDTO(true, "Lấy gợi ý tìm kiếm thành công", suggestions));
+        } catch (Exception e) {
+            log.error("Lỗi không xác định khi lấy gợi ý tìm kiếm: {}", e.getMessage(), e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                .body(new ApiResponseDTO(false, "Lỗi server khi lấy gợi ý tìm kiếm"));
+        }
+    }
+
     @GetMapping("/top-selling")
     public ResponseEntity<ApiResponseDTO> getTopSellingBooks(
             @RequestParam(defaultValue = "10") @Min(1) int limit) {
@@ -336,7 +467,7 @@ public class BookController {
             @RequestParam @NotBlank String keyword,
             @RequestParam(defaultValue = "0") @Min(0) int page,
             @RequestParam(defaultValue = "10") @Min(1) int size,
-            @RequestParam(defaultValue = "createdAt") String sort,
+            @RequestParam(defaultValue = "relevance") String sort,
             @RequestParam(defaultValue = "asc") String direction) {
         try {
             log.info("Tìm kiếm sách theo từ khóa: {}, Trang: {}, Kích thước: {}, Sắp xếp: {}, Hướng: {}",
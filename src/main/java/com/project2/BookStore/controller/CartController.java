@@ -1,6 +1,7 @@
 package com.project2.BookStore.controller;
 
 import com.project2.BookStore.model.CartItem;
+import com.project2.BookStore.dto.CartBulkRequest;
 import com.project2.BookStore.dto.CartItemDTO;
 import com.project2.BookStore.dto.ApiResponseDTO;
 import com.project2.BookStore.dto.CartItemDetailDTO;
@@ -98,6 +99,23 @@ public class CartController {
         }
     }
 
+    @PostMapping("/bulk")
+    public ResponseEntity<ApiResponseDTO> bulkUpdateCart(
+            @Valid @RequestBody CartBulkRequest bulkRequest,
+            HttpServletRequest request) {
+        try {
+            String userId = getUserIdFromToken(request);
+            List<CartItemDetailDTO> items = cartService.bulkUpdateCart(userId, bulkRequest.getItems());
+            Map<String, Object> response = new HashMap<>();
+            response.put("items", items);
+            response.put("totalItems", items.size());
+            return ResponseEntity.ok(new ApiResponseDTO(true, "Cập nhật giỏ hàng thành công", response));
+        } catch (BadRequestException e) {
+            return ResponseEntity.badRequest()
+                .body(new ApiResponseDTO(false, e.getMessage(), null));
+        }
+    }
+
     @DeleteMapping("/remove/{bookId}")
     public ResponseEntity<ApiResponseDTO> removeFromCart(
             @PathVariable String bookId,
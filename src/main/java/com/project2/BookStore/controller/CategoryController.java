@@ -3,11 +3,13 @@ package com.project2.BookStore.controller;
 import com.project2.BookStore.dto.*;
 import com.project2.BookStore.exception.BadRequestException;
 import com.project2.BookStore.service.CategoryService;
+import com.project2.BookStore.util.ETagUtil;
 import jakarta.validation.Valid;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 import lombok.extern.slf4j.Slf4j;
 import java.util.List;
 import org.springframework.data.domain.Page;
@@ -40,8 +42,16 @@ public class CategoryController {
     @GetMapping()
     public ResponseEntity<ApiResponseDTO> getAllCategories(
             @RequestParam(defaultValue = "0") int page,
-            @RequestParam(defaultValue = "10") int size) {
+            @RequestParam(defaultValue = "10") int size,
+            WebRequest webRequest) {
         try {
+            // Kiểm tra If-None-Match/If-Modified-Since trước khi nạp dữ liệu
+            VersionStampDTO version = categoryService.getCategoriesVersion();
+            String etag = ETagUtil.weakETag(version, "categories", page, size);
+            if (webRequest.checkNotModified(etag, version.lastModifiedMillis())) {
+                return ETagUtil.notModified(etag);
+            }
+
             Pageable pageable = PageRequest.of(page, size);
             Page<CategoryDTO> categories = categoryService.getAllCategories(pageable);
             
@@ -55,7 +65,7 @@ public class CategoryController {
             data.put("meta", meta);
             data.put("result", categories.getContent());
 
-            return ResponseEntity.ok(new ApiResponseDTO(true, "Lấy danh sách danh mục thành công", data));
+            return ETagUtil.ok(etag, version).body(new ApiResponseDTO(true, "Lấy danh sách danh mục thành công", data));
         } catch (BadRequestException e) {
             return ResponseEntity.badRequest()
                 .body(new ApiResponseDTO(false, e.getMessage(), null));
@@ -66,10 +76,19 @@ public class CategoryController {
     }
 
     @GetMapping("/{id}")
-    public ResponseEntity<ApiResponseDTO> getCategoryById(@PathVariable String id) {
+    public ResponseEntity<ApiResponseDTO> getCategoryById(@PathVariable String id, WebRequest webRequest) {
         try {
+            VersionStampDTO version = categoryService.getCategoryVersion(id);
+            String etag = null;
+            if (!version.isEmpty()) {
+                etag = ETagUtil.weakETag(version, "category", id);
+                if (webRequest.checkNotModified(etag, version.lastModifiedMillis())) {
+                    return ETagUtil.notModified(etag);
+                }
+            }
+
             CategoryDTO category = categoryService.getCategoryById(id);
-            return ResponseEntity.ok(new ApiResponseDTO(true, "Lấy thông tin danh mục thành công", category));
+            return ETagUtil.ok(etag, version).body(new ApiResponseDTO(true, "Lấy thông tin danh mục thành công", category));
         } catch (BadRequestException e) {
             return ResponseEntity.badRequest()
                 .body(new ApiResponseDTO(false, e.getMessage(), null));
@@ -0,0 +1,110 @@
+package com.project2.BookStore.controller;
+
+import com.project2.BookStore.dto.ApiResponseDTO;
+import com.project2.BookStore.dto.BuyNowRequestDTO;
+import com.project2.BookStore.dto.FlashSaleTicketDTO;
+import com.project2.BookStore.exception.BadRequestException;
+import com.project2.BookStore.service.FlashSaleService;
+import com.project2.BookStore.util.JwtUtil;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.validation.Valid;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.HashMap;
+import java.util.Map;
+
+@Slf4j
+@RestController
+@RequestMapping("/api/bookStore/flash-sale")
+public class FlashSaleController {
+
+    @Autowired
+    private FlashSaleService flashSaleService;
+
+    @Autowired
+    private JwtUtil jwtUtil;
+
+    private String getUserIdFromToken(HttpServletRequest request) {
+        String authHeader = request.getHeader("Authorization");
+        if (authHeader == null || !authHeader.startsWith("Bearer ")) {
+            throw new BadRequestException("Token không hợp lệ");
+        }
+        try {
+            return jwtUtil.getUserIdFromToken(authHeader.substring(7));
+        } catch (Exception e) {
+            throw new BadRequestException("Token không hợp lệ: " + e.getMessage());
+        }
+    }
+
+    @PostMapping("/books/{bookId}")
+    public ResponseEntity<ApiResponseDTO> openFlashSale(
+            @PathVariable String bookId,
+            @RequestParam int tokens) {
+        try {
+            flashSaleService.open(bookId, tokens);
+            Map<String, Object> response = new HashMap<>();
+            response.put("bookId", bookId);
+            response.put("tokens", tokens);
+            return ResponseEntity.ok(new ApiResponseDTO(true, "Mở flash sale thành công", response));
+        } catch (BadRequestException e) {
+            return ResponseEntity.badRequest()
+                .body(new ApiResponseDTO(false, e.getMessage(), null));
+        } catch (Exception e) {
+            log.error("Lỗi khi mở flash sale: {}", e.getMessage(), e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                .body(new ApiResponseDTO(false, "Lỗi server khi mở flash sale", null));
+        }
+    }
+
+    @DeleteMapping("/books/{bookId}")
+    public ResponseEntity<ApiResponseDTO> closeFlashSale(@PathVariable String bookId) {
+        try {
+            int remaining = flashSaleService.close(bookId);
+            Map<String, Object> response = new HashMap<>();
+            response.put("bookId", bookId);
+            response.put("remainingTokens", remaining);
+            return ResponseEntity.ok(new ApiResponseDTO(true, "Đóng flash sale thành công", response));
+        } catch (BadRequestException e) {
+            return ResponseEntity.badRequest()
+                .body(new ApiResponseDTO(false, e.getMessage(), null));
+        }
+    }
+
+    // Trả vé ngay (202), đơn hàng được tạo bất đồng bộ; client tra cứu vé để lấy kết quả
+    @PostMapping("/orders")
+    public ResponseEntity<ApiResponseDTO> submitOrder(
+            @Valid @RequestBody BuyNowRequestDTO buyNowRequest,
+            HttpServletRequest request) {
+        try {
+            String userId = getUserIdFromToken(request);
+            FlashSaleTicketDTO ticket = flashSaleService.submit(buyNowRequest, userId);
+            return ResponseEntity.status(HttpStatus.ACCEPTED)
+                .body(new ApiResponseDTO(true, "Đã nhận yêu cầu mua, đơn hàng đang được xử lý", ticket));
+        } catch (BadRequestException e) {
+            return ResponseEntity.badRequest()
+                .body(new ApiResponseDTO(false, e.getMessage(), null));
+        } catch (Exception e) {
+            log.error("Lỗi khi nhận đơn flash sale: {}", e.getMessage(), e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                .body(new ApiResponseDTO(false, "Lỗi server khi nhận đơn flash sale", null));
+        }
+    }
+
+    @GetMapping("/tickets/{ticketId}")
+    public ResponseEntity<ApiResponseDTO> getTicket(
+            @PathVariable String ticketId,
+            HttpServletRequest request) {
+        try {
+            String userId = getUserIdFromToken(request);
+            FlashSaleTicketDTO ticket = flashSaleService.getTicket(ticketId, userId);
+            return ResponseEntity.ok(new ApiResponseDTO(true, "Lấy trạng thái vé thành công", ticket));
+        } catch (BadRequestException e) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND)
+                .body(new ApiResponseDTO(false, e.getMessage(), null));
+        }
+    }
+}
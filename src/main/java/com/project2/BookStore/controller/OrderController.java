@@ -1,6 +1,9 @@
 package com.project2.BookStore.controller;
 
 import com.project2.BookStore.dto.ApiResponseDTO;
+import com.project2.BookStore.dto.CursorPageResponse;
+import com.project2.BookStore.dto.OrderBulkStatusRequest;
+import com.project2.BookStore.dto.OrderBulkStatusResponseDTO;
 import com.project2.BookStore.dto.OrderRequestDTO;
 import com.project2.BookStore.dto.OrderResponseDTO;
 import com.project2.BookStore.dto.BuyNowRequestDTO;
@@ -9,6 +12,8 @@ import com.project2.BookStore.repository.UserRepository;
 import com.project2.BookStore.service.OrderService;
 import com.project2.BookStore.dto.UserResponseDTO;
 import com.project2.BookStore.exception.BadRequestException;
+import com.project2.BookStore.exception.ConflictException;
+import com.project2.BookStore.service.IdempotencyService;
 import com.project2.BookStore.util.JwtUtil;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.validation.Valid;
@@ -43,6 +48,9 @@ public class OrderController {
     @Autowired
     private UserRepository userRepository;
 
+    @Autowired
+    private IdempotencyService idempotencyService;
+
     private String getCurrentUserId() {
         Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
         if (authentication == null || !authentication.isAuthenticated()) {
@@ -78,15 +86,22 @@ public class OrderController {
     }
 
     @PostMapping
-    public ResponseEntity<ApiResponseDTO> createOrder(@Valid @RequestBody OrderRequestDTO request) {
+    public ResponseEntity<ApiResponseDTO> createOrder(
+            @Valid @RequestBody OrderRequestDTO request,
+            @RequestHeader(value = "Idempotency-Key", required = false) String idempotencyKey) {
         log.info("Creating new order");
         try {
             String userId = getCurrentUserId();
             log.debug("Creating order for user: {}", userId);
-            OrderResponseDTO order = orderService.createOrder(request, userId);
+            OrderResponseDTO order = idempotencyService.execute(userId + ":orders", idempotencyKey, request,
+                OrderResponseDTO.class, () -> orderService.createOrder(request, userId));
             log.info("Order created successfully. OrderId: {}", order.getId());
             return ResponseEntity.status(HttpStatus.CREATED)
                 .body(new ApiResponseDTO(true, "Tạo đơn hàng thành công", order));
+        } catch (ConflictException e) {
+            log.warn("Duplicate in-flight order request: {}", e.getMessage());
+            return ResponseEntity.status(HttpStatus.CONFLICT)
+                .body(new ApiResponseDTO(false, e.getMessage(), null));
         } catch (BadRequestException e) {
             log.warn("Failed to create order: {}", e.getMessage());
             return ResponseEntity.badRequest()
@@ -99,15 +114,22 @@ public class OrderController {
     }
 
     @PostMapping("/buy-now")
-    public ResponseEntity<ApiResponseDTO> buyNow(@Valid @RequestBody BuyNowRequestDTO request) {
+    public ResponseEntity<ApiResponseDTO> buyNow(
+            @Valid @RequestBody BuyNowRequestDTO request,
+            @RequestHeader(value = "Idempotency-Key", required = false) String idempotencyKey) {
         log.info("Creating buy-now order");
         try {
             String userId = getCurrentUserId();
             log.debug("Creating buy-now order for user: {}", userId);
-            OrderResponseDTO order = orderService.buyNow(request, userId);
+            OrderResponseDTO order = idempotencyService.execute(userId + ":orders/buy-now", idempotencyKey, request,
+                OrderResponseDTO.class, () -> orderService.buyNow(request, userId));
             log.info("Buy-now order created successfully. OrderId: {}", order.getId());
             return ResponseEntity.status(HttpStatus.CREATED)
                 .body(new ApiResponseDTO(true, "Mua ngay thành công", order));
+        } catch (ConflictException e) {
+            log.warn("Duplicate in-flight buy-now request: {}", e.getMessage());
+            return ResponseEntity.status(HttpStatus.CONFLICT)
+                .body(new ApiResponseDTO(false, e.getMessage(), null));
         } catch (BadRequestException e) {
             log.warn("Failed to create buy-now order: {}", e.getMessage());
             return ResponseEntity.badRequest()
@@ -189,10 +211,20 @@ public class OrderController {
             @RequestParam(defaultValue = "10") int size,
             @RequestParam(required = false) Order.OrderStatus status,
             @RequestParam(required = false) String search,
-            @RequestParam(defaultValue = "createdAt,desc") String sort) {
-        log.info("Getting all orders for admin. Page: {}, Size: {}, Status: {}, Search: {}, Sort: {}", 
-            page, size, status, search, sort);
+            @RequestParam(defaultValue = "createdAt,desc") String sort,
+            @RequestParam(defaultValue = "offset") String mode,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "false") boolean includeTotal) {
+        log.info("Getting all orders for admin. Page: {}, Size: {}, Status: {}, Search: {}, Sort: {}, Mode: {}", 
+            page, size, status, search, sort, mode);
         try {
+            // Chế độ cursor: seek theo (createdAt, id) giảm dần, độ trễ không tăng theo độ sâu trang
+            if ("cursor".equalsIgnoreCase(mode) || cursor != null) {
+                CursorPageResponse<OrderResponseDTO> orders = orderService.getAllOrdersForAdminByCursor(
+                    status, search, cursor, size, includeTotal);
+                return ResponseEntity.ok(new ApiResponseDTO(true, "Lấy danh sách đơn hàng thành công", orders));
+            }
+
             // Parse sort parameter
             String[] sortParams = sort.split(",");
             String sortField = sortParams[0];
@@ -232,16 +264,21 @@ public class OrderController {
     @PutMapping("/{orderId}/status")
     public ResponseEntity<ApiResponseDTO> updateOrderStatus(
             @PathVariable String orderId,
-            @RequestParam Order.OrderStatus status) {
-        log.info("Updating order status. OrderId: {}, Status: {}", orderId, status);
+            @RequestParam Order.OrderStatus status,
+            @RequestParam(required = false) Long version) {
+        log.info("Updating order status. OrderId: {}, Status: {}, Version: {}", orderId, status, version);
         try {
-            OrderResponseDTO updatedOrder = orderService.updateOrderStatus(orderId, status);
+            OrderResponseDTO updatedOrder = orderService.updateOrderStatus(orderId, status, version);
             log.info("Order status updated successfully. OrderId: {}, New status: {}", orderId, status);
             
             Map<String, Object> response = new HashMap<>();
             response.put("order", updatedOrder);
             response.put("message", "Đã cập nhật trạng thái đơn hàng thành " + status);
             return ResponseEntity.ok(new ApiResponseDTO(true, "Cập nhật trạng thái đơn hàng thành công", response));
+        } catch (ConflictException e) {
+            log.warn("Order {} was modified concurrently: {}", orderId, e.getMessage());
+            return ResponseEntity.status(HttpStatus.CONFLICT)
+                .body(new ApiResponseDTO(false, e.getMessage(), null));
         } catch (BadRequestException e) {
             log.warn("Failed to update order status: {}", e.getMessage());
             return ResponseEntity.badRequest()
@@ -253,6 +290,26 @@ public class OrderController {
         }
     }
 
+    // Xác nhận / giao / hoàn tất nhiều đơn cùng lúc, trả kết quả theo từng đơn
+    @PutMapping("/bulk-status")
+    public ResponseEntity<ApiResponseDTO> bulkUpdateOrderStatus(@Valid @RequestBody OrderBulkStatusRequest request) {
+        log.info("Bulk updating order status. Count: {}, Status: {}", request.getOrderIds().size(), request.getStatus());
+        try {
+            OrderBulkStatusResponseDTO result = orderService.bulkUpdateOrderStatus(request.getOrderIds(), request.getStatus());
+            String message = String.format("Đã cập nhật %d/%d đơn hàng sang %s",
+                result.getUpdatedCount(), result.getResults().size(), request.getStatus());
+            return ResponseEntity.ok(new ApiResponseDTO(true, message, result));
+        } catch (BadRequestException e) {
+            log.warn("Failed to bulk update order status: {}", e.getMessage());
+            return ResponseEntity.badRequest()
+                .body(new ApiResponseDTO(false, e.getMessage(), null));
+        } catch (Exception e) {
+            log.error("Error bulk updating order status: {}", e.getMessage(), e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                .body(new ApiResponseDTO(false, "Lỗi server khi cập nhật trạng thái đơn hàng", null));
+        }
+    }
+
     @PostMapping("/{orderId}/cancel")
     public ResponseEntity<ApiResponseDTO> cancelOrder(@PathVariable String orderId) {
         log.info("Cancelling order. OrderId: {}", orderId);
@@ -264,6 +321,10 @@ public class OrderController {
             log.info("Order cancelled successfully. OrderId: {}", orderId);
             
             return ResponseEntity.ok(new ApiResponseDTO(true, "Hủy đơn hàng thành công", cancelledOrder));
+        } catch (ConflictException e) {
+            log.warn("Order {} was modified concurrently: {}", orderId, e.getMessage());
+            return ResponseEntity.status(HttpStatus.CONFLICT)
+                .body(new ApiResponseDTO(false, e.getMessage(), null));
         } catch (BadRequestException e) {
             log.warn("Failed to cancel order: {}", e.getMessage());
             return ResponseEntity.badRequest()
@@ -300,6 +361,7 @@ public class OrderController {
     @PostMapping("/{orderId}/confirm")
     public ResponseEntity<ApiResponseDTO> confirmOrder(
             @PathVariable String orderId,
+            @RequestParam(required = false) Long version,
             HttpServletRequest request) {
         try {
             // Lấy token từ header
@@ -316,15 +378,13 @@ public class OrderController {
                     .body(new ApiResponseDTO(false, "Không có quyền xác nhận đơn hàng", null));
             }
 
-            // Kiểm tra đơn hàng
-            OrderResponseDTO order = orderService.getOrderById(orderId);
-            if (order.getStatus() != Order.OrderStatus.PENDING) {
-                return ResponseEntity.badRequest()
-                    .body(new ApiResponseDTO(false, "Chỉ có thể xác nhận đơn hàng ở trạng thái chờ xác nhận", null));
-            }
-
-            OrderResponseDTO confirmedOrder = orderService.updateOrderStatus(orderId, Order.OrderStatus.CONFIRMED);
+            // Chỉ xác nhận được đơn đang chờ xác nhận (kiểm tra trong câu UPDATE của OrderStateMachine)
+            OrderResponseDTO confirmedOrder = orderService.updateOrderStatus(orderId, Order.OrderStatus.CONFIRMED, version);
             return ResponseEntity.ok(new ApiResponseDTO(true, "Xác nhận đơn hàng thành công", confirmedOrder));
+        } catch (ConflictException e) {
+            log.warn("Lỗi khi xác nhận đơn hàng: {}", e.getMessage());
+            return ResponseEntity.status(HttpStatus.CONFLICT)
+                .body(new ApiResponseDTO(false, e.getMessage(), null));
         } catch (BadRequestException e) {
             log.error("Lỗi khi xác nhận đơn hàng: {}", e.getMessage());
             return ResponseEntity.badRequest()
@@ -339,6 +399,7 @@ public class OrderController {
     @PostMapping("/{orderId}/shipping")
     public ResponseEntity<ApiResponseDTO> updateOrderToShipping(
             @PathVariable String orderId,
+            @RequestParam(required = false) Long version,
             HttpServletRequest request) {
         log.info("Bắt đầu cập nhật trạng thái giao hàng cho đơn hàng: {}", orderId);
         try {
@@ -351,22 +412,8 @@ public class OrderController {
             }
             String token = authHeader.substring(7);
 
-            // Kiểm tra đơn hàng
-            OrderResponseDTO order = orderService.getOrderById(orderId);
-            log.info("Trạng thái hiện tại của đơn hàng {}: {}", orderId, order.getStatus());
-            
-            if (order.getStatus() != Order.OrderStatus.CONFIRMED) {
-                String message = String.format(
-                    "Chỉ có thể cập nhật trạng thái giao hàng cho đơn hàng đã xác nhận. Trạng thái hiện tại: %s", 
-                    order.getStatus()
-                );
-                log.warn(message);
-                return ResponseEntity.badRequest()
-                    .body(new ApiResponseDTO(false, message, null));
-            }
-
-            // Cập nhật trạng thái
-            OrderResponseDTO updatedOrder = orderService.updateOrderStatus(orderId, Order.OrderStatus.SHIPPING);
+            // Cập nhật trạng thái (chỉ áp dụng cho đơn đã xác nhận, kiểm tra trong câu UPDATE của OrderStateMachine)
+            OrderResponseDTO updatedOrder = orderService.updateOrderStatus(orderId, Order.OrderStatus.SHIPPING, version);
             log.info("Đã cập nhật trạng thái giao hàng thành công cho đơn hàng: {}", orderId);
             
             Map<String, Object> response = new HashMap<>();
@@ -374,6 +421,10 @@ public class OrderController {
             response.put("status", "SHIPPING");
             response.put("message", "Đã cập nhật trạng thái đơn hàng sang đang giao hàng");
             return ResponseEntity.ok(new ApiResponseDTO(true, "Cập nhật trạng thái giao hàng thành công", response));
+        } catch (ConflictException e) {
+            log.warn("Lỗi khi cập nhật trạng thái giao hàng cho đơn hàng {}: {}", orderId, e.getMessage());
+            return ResponseEntity.status(HttpStatus.CONFLICT)
+                .body(new ApiResponseDTO(false, e.getMessage(), null));
         } catch (BadRequestException e) {
             log.error("Lỗi khi cập nhật trạng thái giao hàng cho đơn hàng {}: {}", orderId, e.getMessage());
             return ResponseEntity.badRequest()
@@ -388,6 +439,7 @@ public class OrderController {
     @PostMapping("/{orderId}/delivered")
     public ResponseEntity<ApiResponseDTO> updateOrderToDelivered(
             @PathVariable String orderId,
+            @RequestParam(required = false) Long version,
             HttpServletRequest request) {
         log.info("Bắt đầu cập nhật trạng thái đã giao hàng cho đơn hàng: {}", orderId);
         try {
@@ -400,22 +452,8 @@ public class OrderController {
             }
             String token = authHeader.substring(7);
 
-            // Kiểm tra đơn hàng
-            OrderResponseDTO order = orderService.getOrderById(orderId);
-            log.info("Trạng thái hiện tại của đơn hàng {}: {}", orderId, order.getStatus());
-            
-            if (order.getStatus() != Order.OrderStatus.SHIPPING) {
-                String message = String.format(
-                    "Chỉ có thể cập nhật trạng thái đã giao hàng cho đơn hàng đang giao. Trạng thái hiện tại: %s", 
-                    order.getStatus()
-                );
-                log.warn(message);
-                return ResponseEntity.badRequest()
-                    .body(new ApiResponseDTO(false, message, null));
-            }
-
-            // Cập nhật trạng thái
-            OrderResponseDTO updatedOrder = orderService.updateOrderStatus(orderId, Order.OrderStatus.DELIVERED);
+            // Cập nhật trạng thái (chỉ áp dụng cho đơn đang giao, kiểm tra trong câu UPDATE của OrderStateMachine)
+            OrderResponseDTO updatedOrder = orderService.updateOrderStatus(orderId, Order.OrderStatus.DELIVERED, version);
             log.info("Đã cập nhật trạng thái đã giao hàng thành công cho đơn hàng: {}", orderId);
             
             Map<String, Object> response = new HashMap<>();
@@ -423,6 +461,10 @@ public class OrderController {
             response.put("status", "DELIVERED");
             response.put("message", "Đã cập nhật trạng thái đơn hàng sang đã giao hàng thành công");
             return ResponseEntity.ok(new ApiResponseDTO(true, "Cập nhật trạng thái đã giao hàng thành công", response));
+        } catch (ConflictException e) {
+            log.warn("Lỗi khi cập nhật trạng thái đã giao hàng cho đơn hàng {}: {}", orderId, e.getMessage());
+            return ResponseEntity.status(HttpStatus.CONFLICT)
+                .body(new ApiResponseDTO(false, e.getMessage(), null));
         } catch (BadRequestException e) {
             log.error("Lỗi khi cập nhật trạng thái đã giao hàng cho đơn hàng {}: {}", orderId, e.getMessage());
             return ResponseEntity.badRequest()
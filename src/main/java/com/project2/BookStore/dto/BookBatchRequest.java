@@ -0,0 +1,15 @@
+package com.project2.BookStore.dto;
+
+import jakarta.validation.constraints.NotEmpty;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.AllArgsConstructor;
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BookBatchRequest {
+    @NotEmpty(message = "Danh sách ID sách không được để trống")
+    private List<String> ids;
+}
@@ -0,0 +1,14 @@
+package com.project2.BookStore.dto;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.AllArgsConstructor;
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BookBatchResponseDTO {
+    private List<BookResponseDTO> books;    // Theo đúng thứ tự ID được yêu cầu
+    private List<String> missingIds;        // Các ID không tìm thấy sách
+}
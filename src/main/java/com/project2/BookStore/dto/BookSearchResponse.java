@@ -0,0 +1,16 @@
+package com.project2.BookStore.dto;
+
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+import org.springframework.data.domain.Page;
+
+@Data
+@EqualsAndHashCode(callSuper = true)
+public class BookSearchResponse extends PageResponse<BookResponseDTO> {
+    private SearchFacetsDTO facets;
+
+    public BookSearchResponse(Page<BookResponseDTO> page, SearchFacetsDTO facets) {
+        super(page);
+        this.facets = facets;
+    }
+}
@@ -0,0 +1,15 @@
+package com.project2.BookStore.dto;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.AllArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BookSuggestionDTO {
+    private String text;    // Tên sách hoặc tên tác giả (giữ nguyên dấu)
+    private String type;    // "title" hoặc "author"
+    private String bookId;  // Chỉ có với gợi ý tên sách
+    private int sold;       // Tổng số lượng đã bán, dùng để xếp hạng
+}
@@ -0,0 +1,37 @@
+package com.project2.BookStore.dto;
+
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.Max;
+import jakarta.validation.constraints.Min;
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Size;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class CartBulkRequest {
+    @NotEmpty(message = "Danh sách thay đổi giỏ hàng không được để trống")
+    @Size(max = 200, message = "Tối đa 200 thay đổi mỗi lần")
+    @Valid
+    private List<Item> items;
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Item {
+        @NotBlank(message = "ID sách không được để trống")
+        private String bookId;
+
+        // Số lượng mới trong giỏ, 0 nghĩa là xóa sách khỏi giỏ
+        @NotNull(message = "Số lượng không được để trống")
+        @Min(value = 0, message = "Số lượng không được âm")
+        @Max(value = 100, message = "Số lượng không được vượt quá 100")
+        private Integer quantity;
+    }
+}
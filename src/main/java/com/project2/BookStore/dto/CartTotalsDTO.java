@@ -0,0 +1,13 @@
+package com.project2.BookStore.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class CartTotalsDTO {
+    private Long totalItems;    // Tổng số lượng sách trong giỏ
+    private Long totalValue;    // Tổng giá trị giỏ hàng
+}
@@ -0,0 +1,17 @@
+package com.project2.BookStore.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class CursorPageResponse<T> {
+    private List<T> content;
+    private int size;
+    private String nextCursor;      // null nếu đã hết dữ liệu
+    private boolean hasNext;
+    private Long totalElements;     // chỉ có khi client yêu cầu includeTotal=true
+}
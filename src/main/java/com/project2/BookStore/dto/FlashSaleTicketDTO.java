@@ -0,0 +1,26 @@
+package com.project2.BookStore.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class FlashSaleTicketDTO {
+    private String ticketId;
+    private String bookId;
+    private Integer quantity;
+    private Status status;
+    private String orderId;         // Chỉ có khi status = COMPLETED
+    private String message;         // Lý do khi status = FAILED
+    private LocalDateTime createdAt;
+
+    public enum Status {
+        QUEUED,     // Đã nhận suất mua, đang chờ tạo đơn
+        COMPLETED,  // Đơn hàng đã được tạo
+        FAILED      // Không tạo được đơn hàng, suất mua đã được trả lại
+    }
+}
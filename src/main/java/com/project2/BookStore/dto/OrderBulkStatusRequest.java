@@ -0,0 +1,22 @@
+package com.project2.BookStore.dto;
+
+import com.project2.BookStore.model.Order;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Size;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.AllArgsConstructor;
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class OrderBulkStatusRequest {
+    @NotEmpty(message = "Danh sách ID đơn hàng không được để trống")
+    @Size(max = 500, message = "Tối đa 500 đơn hàng mỗi lần")
+    private List<String> orderIds;
+
+    @NotNull(message = "Trạng thái mới không được để trống")
+    private Order.OrderStatus status;
+}
@@ -0,0 +1,27 @@
+package com.project2.BookStore.dto;
+
+import com.project2.BookStore.model.Order;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.AllArgsConstructor;
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class OrderBulkStatusResponseDTO {
+    private Order.OrderStatus status;       // Trạng thái đích
+    private int updatedCount;
+    private int failedCount;
+    private List<Result> results;           // Theo đúng thứ tự ID được yêu cầu
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Result {
+        private String orderId;
+        private boolean success;
+        private Order.OrderStatus currentStatus;   // null nếu không tìm thấy đơn
+        private String message;
+    }
+}
@@ -25,6 +25,7 @@ public class OrderResponseDTO {
     private List<OrderItemResponseDTO> items;
     private LocalDateTime createdAt;
     private LocalDateTime updatedAt;
+    private Long version;       // Gửi lại khi cập nhật trạng thái để tránh ghi đè thay đổi của người khác
 
     @Data
     @NoArgsConstructor
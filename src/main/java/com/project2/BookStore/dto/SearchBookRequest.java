@@ -14,4 +14,6 @@ public class SearchBookRequest {
     private String sortDirection; // Hướng sắp xếp (asc, desc)
     private Integer page = 0; // Trang hiện tại
     private Integer size = 10; // Số lượng item trên mỗi trang
+    private Boolean fuzzy = false; // Chấp nhận lỗi chính tả trong từ khóa
+    private Boolean facets = false; // Có trả về thống kê theo danh mục, khoảng giá, tồn kho hay không
 } 
\ No newline at end of file
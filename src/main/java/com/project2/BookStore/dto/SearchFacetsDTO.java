@@ -0,0 +1,35 @@
+package com.project2.BookStore.dto;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.AllArgsConstructor;
+import java.util.List;
+
+// Thống kê kết quả tìm kiếm theo danh mục, khoảng giá và tình trạng tồn kho.
+// Mỗi nhóm được đếm với mọi bộ lọc trừ bộ lọc của chính nhóm đó, để client biết chọn giá trị khác sẽ ra bao nhiêu sách
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class SearchFacetsDTO {
+    private List<CategoryFacet> categories;
+    private List<PriceRangeFacet> priceRanges;
+    private long inStock;
+    private long outOfStock;
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class CategoryFacet {
+        private String categoryId;
+        private long count;
+    }
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class PriceRangeFacet {
+        private Long minPrice;  // Bao gồm
+        private Long maxPrice;  // Không bao gồm, null nếu không giới hạn trên
+        private long count;
+    }
+}
@@ -0,0 +1,34 @@
+package com.project2.BookStore.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+
+// Phiên bản của một bản ghi hoặc một tập bản ghi: số lượng + thời điểm cập nhật gần nhất, dùng để tính ETag
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class VersionStampDTO {
+    private Long count;
+    private LocalDateTime lastModified; // null nếu không có bản ghi nào
+
+    public boolean isEmpty() {
+        return count == null || count == 0;
+    }
+
+    // Gộp phiên bản của nhiều bảng (ví dụ books + categories) thành một
+    public VersionStampDTO merge(VersionStampDTO other) {
+        LocalDateTime latest = lastModified;
+        if (latest == null || (other.lastModified != null && other.lastModified.isAfter(latest))) {
+            latest = other.lastModified;
+        }
+        return new VersionStampDTO(count + other.count, latest);
+    }
+
+    // Epoch millis cho header Last-Modified, -1 nếu không xác định
+    public long lastModifiedMillis() {
+        return lastModified == null ? -1 : lastModified.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+}
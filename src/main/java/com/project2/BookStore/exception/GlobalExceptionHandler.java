@@ -40,6 +40,12 @@ public class GlobalExceptionHandler {
         return new ResponseEntity<>(response, HttpStatus.NOT_FOUND);
     }
 
+    @ExceptionHandler(ConflictException.class)
+    public ResponseEntity<ApiResponseDTO> handleConflictException(ConflictException ex) {
+        ApiResponseDTO response = new ApiResponseDTO(false, ex.getMessage(), null);
+        return new ResponseEntity<>(response, HttpStatus.CONFLICT);
+    }
+
     @ExceptionHandler(Exception.class)
     public ResponseEntity<ApiResponseDTO> handleGlobalException(Exception ex) {
         ApiResponseDTO response = new ApiResponseDTO(false, "Đã xảy ra lỗi: " + ex.getMessage(), null);
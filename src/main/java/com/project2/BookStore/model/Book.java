@@ -14,7 +14,17 @@ import java.time.LocalDateTime;
 
 @Data
 @Entity
-@Table(name = "books")
+@Table(name = "books", indexes = {
+    // Phục vụ phân trang keyset theo (trường sắp xếp, id)
+    @Index(name = "idx_books_created_at_id", columnList = "created_at, id"),
+    @Index(name = "idx_books_price_id", columnList = "price, id"),
+    @Index(name = "idx_books_sold_id", columnList = "sold, id"),
+    @Index(name = "idx_books_main_text_id", columnList = "main_text, id"),
+    // MAX(updated_at) khi tính ETag cho danh sách sách
+    @Index(name = "idx_books_updated_at", columnList = "updated_at"),
+    // Đếm/kiểm tra sách theo danh mục
+    @Index(name = "idx_books_category_id", columnList = "category_id")
+})
 @NoArgsConstructor
 @AllArgsConstructor
 public class Book {
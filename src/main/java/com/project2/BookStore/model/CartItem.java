@@ -11,7 +11,10 @@ import java.time.LocalDateTime;
 
 @Data
 @Entity
-@Table(name = "cart_items")
+@Table(name = "cart_items", uniqueConstraints = {
+    // Mỗi sách chỉ có một dòng trong giỏ của một user; unique index này cũng phục vụ truy vấn theo user_id
+    @UniqueConstraint(name = "uk_cart_items_user_book", columnNames = {"user_id", "book_id"})
+})
 @NoArgsConstructor
 @AllArgsConstructor
 public class CartItem {
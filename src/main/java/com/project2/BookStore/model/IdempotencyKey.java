@@ -0,0 +1,45 @@
+package com.project2.BookStore.model;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.AllArgsConstructor;
+
+import java.time.LocalDateTime;
+
+// Kết quả của một request ghi theo Idempotency-Key, dùng để trả lại đúng response khi client gửi lại request
+@Data
+@Entity
+@Table(name = "idempotency_keys", indexes = {
+    @Index(name = "idx_idempotency_keys_expires_at", columnList = "expires_at")
+})
+@NoArgsConstructor
+@AllArgsConstructor
+public class IdempotencyKey {
+    // Phạm vi (user + endpoint) ghép với key client gửi lên
+    @Id
+    @Column(length = 255)
+    private String id;
+
+    @Column(name = "request_hash", nullable = false, length = 64)
+    private String requestHash;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false)
+    private Status status;
+
+    // Response đã lưu dạng JSON, chỉ có khi status = COMPLETED
+    @Column(columnDefinition = "text")
+    private String response;
+
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt;
+
+    @Column(name = "expires_at", nullable = false)
+    private LocalDateTime expiresAt;
+
+    public enum Status {
+        IN_PROGRESS,    // Request đầu tiên đang được xử lý
+        COMPLETED       // Đã xử lý xong, response đã được lưu
+    }
+}
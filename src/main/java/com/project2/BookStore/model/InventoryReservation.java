@@ -0,0 +1,40 @@
+package com.project2.BookStore.model;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.AllArgsConstructor;
+import org.hibernate.annotations.CreationTimestamp;
+
+import java.time.LocalDateTime;
+
+// Số lượng sách đang được giữ cho một đơn hàng chưa thanh toán, hết hạn thì đơn bị hủy và hoàn kho
+@Data
+@Entity
+@Table(name = "inventory_reservations", indexes = {
+    @Index(name = "idx_inventory_reservations_order_id", columnList = "order_id"),
+    @Index(name = "idx_inventory_reservations_expires_at", columnList = "expires_at")
+})
+@NoArgsConstructor
+@AllArgsConstructor
+public class InventoryReservation {
+    @Id
+    @GeneratedValue(strategy = GenerationType.UUID)
+    private String id;
+
+    @Column(name = "order_id", nullable = false)
+    private String orderId;
+
+    @Column(name = "book_id", nullable = false)
+    private String bookId;
+
+    @Column(nullable = false)
+    private Integer quantity;
+
+    @Column(name = "expires_at", nullable = false)
+    private LocalDateTime expiresAt;
+
+    @CreationTimestamp
+    @Column(name = "created_at", nullable = false, updatable = false)
+    private LocalDateTime createdAt;
+}
@@ -13,7 +13,12 @@ import java.util.List;
 
 @Data
 @Entity
-@Table(name = "orders")
+@Table(name = "orders", indexes = {
+    // Phân trang keyset cho trang quản trị theo (created_at, id), có và không lọc trạng thái
+    @Index(name = "idx_orders_created_at_id", columnList = "created_at, id"),
+    @Index(name = "idx_orders_status_created_at_id", columnList = "status, created_at, id"),
+    @Index(name = "idx_orders_phone", columnList = "phone")
+})
 @NoArgsConstructor
 @AllArgsConstructor
 public class Order {
@@ -63,13 +68,47 @@ public class Order {
     @Column(name = "updated_at", nullable = false)
     private LocalDateTime updatedAt;
 
+    // Khóa lạc quan: mọi lần chuyển trạng thái đều tăng version, cập nhật dựa trên version cũ sẽ thất bại
+    @Version
+    @Column(nullable = false, columnDefinition = "bigint default 0")
+    private Long version;
+
     public enum OrderStatus {
         PENDING,    // Chờ xác nhận
         CONFIRMED,  // Đã xác nhận
         SHIPPING,   // Đang giao hàng
         DELIVERED,  // Đã giao hàng
         CANCELLED,  // Đã hủy
-        REFUNDED    // Đã hoàn tiền
+        REFUNDED;   // Đã hoàn tiền
+
+        // Các bước chuyển trạng thái hợp lệ: đi tiếp từng bước, hủy trước khi giao xong,
+        // hoàn tiền sau khi giao/hủy (OrderStateMachine còn yêu cầu đơn đã thanh toán)
+        public boolean canTransitionTo(OrderStatus target) {
+            switch (this) {
+                case PENDING:
+                    return target == CONFIRMED || target == CANCELLED;
+                case CONFIRMED:
+                    return target == SHIPPING || target == CANCELLED;
+                case SHIPPING:
+                    return target == DELIVERED || target == CANCELLED;
+                case DELIVERED:
+                case CANCELLED:
+                    return target == REFUNDED;
+                default:
+                    return false;
+            }
+        }
+
+        // Các trạng thái được phép chuyển sang target (suy ra từ canTransitionTo)
+        public static List<OrderStatus> sourcesOf(OrderStatus target) {
+            List<OrderStatus> sources = new ArrayList<>();
+            for (OrderStatus status : values()) {
+                if (status.canTransitionTo(target)) {
+                    sources.add(status);
+                }
+            }
+            return sources;
+        }
     }
 
     public enum PaymentMethod {
@@ -0,0 +1,42 @@
+package com.project2.BookStore.model;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.AllArgsConstructor;
+import org.hibernate.annotations.CreationTimestamp;
+
+import java.time.LocalDateTime;
+
+// Lịch sử chuyển trạng thái đơn hàng, được ghi cùng câu lệnh với UPDATE orders (xem OrderStateMachineImpl)
+@Data
+@Entity
+@Table(name = "order_status_transitions", indexes = {
+    @Index(name = "idx_order_status_transitions_order_id", columnList = "order_id")
+})
+@NoArgsConstructor
+@AllArgsConstructor
+public class OrderStatusTransition {
+    @Id
+    @GeneratedValue(strategy = GenerationType.UUID)
+    private String id;
+
+    @Column(name = "order_id", nullable = false)
+    private String orderId;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "from_status", nullable = false)
+    private Order.OrderStatus fromStatus;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "to_status", nullable = false)
+    private Order.OrderStatus toStatus;
+
+    // Version của đơn hàng sau khi chuyển
+    @Column(nullable = false)
+    private Long version;
+
+    @CreationTimestamp
+    @Column(name = "created_at", nullable = false, updatable = false)
+    private LocalDateTime createdAt;
+}
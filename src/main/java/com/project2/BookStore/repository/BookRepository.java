@@ -1,36 +1,96 @@
 package com.project2.BookStore.repository;
 
+import com.project2.BookStore.dto.VersionStampDTO;
 import com.project2.BookStore.model.Book;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Repository;
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
 import java.math.BigDecimal;
 
+// Các method trả về danh sách cho BookResponseDTO đều fetch luôn category bằng entity graph
+// để tránh N+1 query (mỗi sách một câu SELECT category)
 @Repository
 public interface BookRepository extends JpaRepository<Book, String>, JpaSpecificationExecutor<Book> {
     boolean existsByMainText(String mainText);
     List<Book> findByCategoryId(String categoryId);
+
+    @EntityGraph(attributePaths = "category")
     Page<Book> findByCategoryId(String categoryId, Pageable pageable);
+
     long countByCategoryId(String categoryId);
-    
-    // Tìm kiếm sách theo tên hoặc tác giả
-    Page<Book> findByMainTextContainingIgnoreCaseOrAuthorContainingIgnoreCase(String mainText, String author, Pageable pageable);
+
+    boolean existsByCategoryId(String categoryId);
+
+    // Phiên bản của một sách: lấy thời điểm cập nhật mới nhất giữa sách và category của nó
+    @Query("SELECT new com.project2.BookStore.dto.VersionStampDTO(COUNT(b), " +
+           "MAX(CASE WHEN c.updatedAt > b.updatedAt THEN c.updatedAt ELSE b.updatedAt END)) " +
+           "FROM Book b JOIN b.category c WHERE b.id = :id")
+    VersionStampDTO findVersionById(@Param("id") String id);
+
+    // Phiên bản của toàn bộ bảng books (số sách + thời điểm cập nhật mới nhất)
+    @Query("SELECT new com.project2.BookStore.dto.VersionStampDTO(COUNT(b), MAX(b.updatedAt)) FROM Book b")
+    VersionStampDTO findCatalogVersion();
+
+    // Lấy sách kèm category trong một câu query
+    @EntityGraph(attributePaths = "category")
+    Optional<Book> findWithCategoryById(String id);
+
+    // Lấy danh sách sách theo nhiều ID kèm category trong một câu query (thứ tự không đảm bảo)
+    @EntityGraph(attributePaths = "category")
+    List<Book> findAllWithCategoryByIdIn(Collection<String> ids);
+
+    // Đọc sách khi đặt hàng ở chế độ chỉ đọc (không dirty-check): tồn kho được trừ bằng câu UPDATE có điều kiện,
+    // entity chỉ được cập nhật trong bộ nhớ để đồng bộ index
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true"))
+    List<Book> findReadOnlyByIdIn(Collection<String> ids);
+
+    // Lấy toàn bộ sách kèm category
+    @EntityGraph(attributePaths = "category")
+    @Query("SELECT b FROM Book b")
+    List<Book> findAllWithCategory();
+
+    // Stream toàn bộ sách kèm category, JDBC đọc theo lô (fetch size) thay vì nạp hết vào bộ nhớ.
+    // Phải được gọi trong transaction và đóng stream sau khi dùng
+    @QueryHints({
+        @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"),
+        @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")
+    })
+    @Query("SELECT b FROM Book b JOIN FETCH b.category")
+    Stream<Book> streamAllWithCategory();
+
+    // Tìm kiếm/lọc theo Specification, fetch luôn category (count query không bị ảnh hưởng)
+    @Override
+    @EntityGraph(attributePaths = "category")
+    Page<Book> findAll(Specification<Book> spec, Pageable pageable);
 
     // Lấy sách bán chạy nhất
+    @EntityGraph(attributePaths = "category")
     List<Book> findAllByOrderBySoldDesc(Pageable pageable);
 
     // Lấy sách mới nhất
+    @EntityGraph(attributePaths = "category")
     List<Book> findAllByOrderByCreatedAtDesc(Pageable pageable);
 
     // Lấy sách sắp hết hàng
+    @EntityGraph(attributePaths = "category")
     List<Book> findByQuantityLessThanEqualOrderByQuantityAsc(int threshold, Pageable pageable);
 
     // Custom query để lấy sách có phân trang và sắp xếp
+    @EntityGraph(attributePaths = "category")
     @Query(value = "SELECT b FROM Book b",
            countQuery = "SELECT COUNT(b) FROM Book b")
     Page<Book> findAllWithPagination(Pageable pageable);
-} 
\ No newline at end of file
+}
@@ -1,7 +1,10 @@
 package com.project2.BookStore.repository;
 
+import com.project2.BookStore.dto.CartTotalsDTO;
 import com.project2.BookStore.model.CartItem;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 import java.util.List;
 import java.util.Optional;
@@ -11,4 +14,24 @@ public interface CartItemRepository extends JpaRepository<CartItem, String> {
     List<CartItem> findByUser_Id(String userId);
     Optional<CartItem> findByUser_IdAndBook_Id(String userId, String bookId);
     void deleteByUser_IdAndBook_Id(String userId, String bookId);
+
+    // Tổng số lượng và tổng giá trị giỏ hàng tính ngay trong database, không nạp từng CartItem
+    @Query("SELECT new com.project2.BookStore.dto.CartTotalsDTO(COALESCE(SUM(c.quantity), 0L), COALESCE(SUM(c.totalPrice), 0L)) " +
+           "FROM CartItem c WHERE c.user.id = :userId")
+    CartTotalsDTO getCartTotals(@Param("userId") String userId);
+
+    // Thêm sách vào giỏ hoặc cộng dồn số lượng trong một câu lệnh (dựa trên uk_cart_items_user_book).
+    // Trả về số lượng mới trong giỏ, null nếu tổng số lượng sau khi cộng vượt quá maxQuantity (không có gì thay đổi)
+    @Query(value = "INSERT INTO cart_items (id, user_id, book_id, quantity, total_price, created_at, updated_at) " +
+                   "VALUES (:id, :userId, :bookId, :quantity, :quantity * :price, now(), now()) " +
+                   "ON CONFLICT (user_id, book_id) DO UPDATE " +
+                   "SET quantity = cart_items.quantity + EXCLUDED.quantity, " +
+                   "total_price = (cart_items.quantity + EXCLUDED.quantity) * :price, " +
+                   "updated_at = now() " +
+                   "WHERE cart_items.quantity + EXCLUDED.quantity <= :maxQuantity " +
+                   "RETURNING quantity",
+           nativeQuery = true)
+    Integer upsertQuantity(@Param("id") String id, @Param("userId") String userId, @Param("bookId") String bookId,
+                           @Param("quantity") int quantity, @Param("price") long price,
+                           @Param("maxQuantity") int maxQuantity);
 } 
\ No newline at end of file
@@ -1,8 +1,12 @@
 package com.project2.BookStore.repository;
 
+import com.project2.BookStore.dto.CategoryCountDTO;
+import com.project2.BookStore.dto.VersionStampDTO;
 import com.project2.BookStore.model.Category;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 import java.util.List;
 import java.util.Optional;
@@ -10,6 +14,13 @@ import java.util.Optional;
 @Repository
 public interface CategoryRepository extends JpaRepository<Category, String> {
     Optional<Category> findByName(String name);
+
+    // Tạo danh mục nếu chưa có tên này, không lỗi khi bị tạo trùng đồng thời (trả về 0 nếu đã tồn tại)
+    @Modifying
+    @Query(value = "INSERT INTO categories (id, name, description, created_at, updated_at) " +
+                   "VALUES (:id, :name, :description, now(), now()) ON CONFLICT (name) DO NOTHING",
+           nativeQuery = true)
+    int insertIfAbsent(@Param("id") String id, @Param("name") String name, @Param("description") String description);
     boolean existsByName(String name);
     
     @Query("SELECT c FROM Category c WHERE LOWER(c.name) LIKE LOWER(CONCAT('%', :name, '%'))")
@@ -17,4 +28,16 @@ public interface CategoryRepository extends JpaRepository<Category, String> {
     
     @Query("SELECT c FROM Category c ORDER BY c.name ASC")
     List<Category> findAllOrderByNameAsc();
+
+    // Đếm số sách theo từng danh mục trong một câu query (danh mục chưa có sách có count = 0)
+    @Query("SELECT new com.project2.BookStore.dto.CategoryCountDTO(c.id, c.name, COUNT(b)) " +
+           "FROM Category c LEFT JOIN Book b ON b.categoryId = c.id " +
+           "GROUP BY c.id, c.name ORDER BY c.name ASC")
+    List<CategoryCountDTO> countBooksByCategory();
+
+    @Query("SELECT new com.project2.BookStore.dto.VersionStampDTO(COUNT(c), MAX(c.updatedAt)) FROM Category c WHERE c.id = :id")
+    VersionStampDTO findVersionById(@Param("id") String id);
+
+    @Query("SELECT new com.project2.BookStore.dto.VersionStampDTO(COUNT(c), MAX(c.updatedAt)) FROM Category c")
+    VersionStampDTO findAllVersion();
 } 
\ No newline at end of file
@@ -0,0 +1,47 @@
+package com.project2.BookStore.repository;
+
+import com.project2.BookStore.model.IdempotencyKey;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+
+@Repository
+public interface IdempotencyKeyRepository extends JpaRepository<IdempotencyKey, String> {
+    // Giành quyền xử lý key: thêm mới, hoặc chiếm lại key đã hết hạn (kể cả key IN_PROGRESS quá hạn giữ chỗ
+    // do tiến trình chết giữa chừng). Trả về 0 nếu key đang được dùng
+    @Transactional
+    @Modifying
+    @Query(value = "INSERT INTO idempotency_keys (id, request_hash, status, created_at, expires_at) " +
+                   "VALUES (:id, :requestHash, 'IN_PROGRESS', now(), :expiresAt) " +
+                   "ON CONFLICT (id) DO UPDATE SET request_hash = EXCLUDED.request_hash, status = 'IN_PROGRESS', " +
+                   "response = NULL, created_at = now(), expires_at = EXCLUDED.expires_at " +
+                   "WHERE idempotency_keys.expires_at < now()",
+           nativeQuery = true)
+    int claim(@Param("id") String id, @Param("requestHash") String requestHash,
+              @Param("expiresAt") LocalDateTime expiresAt);
+
+    @Transactional
+    @Modifying
+    // Lưu response và kéo dài thời hạn của key từ hạn giữ chỗ ngắn lên toàn bộ TTL.
+    // Trả về 0 nếu key không còn ở trạng thái giữ chỗ
+    @Query("UPDATE IdempotencyKey k SET k.status = com.project2.BookStore.model.IdempotencyKey.Status.COMPLETED, " +
+           "k.response = :response, k.expiresAt = :expiresAt " +
+           "WHERE k.id = :id AND k.status = com.project2.BookStore.model.IdempotencyKey.Status.IN_PROGRESS")
+    int complete(@Param("id") String id, @Param("response") String response,
+                 @Param("expiresAt") LocalDateTime expiresAt);
+
+    @Transactional
+    @Modifying
+    @Query("DELETE FROM IdempotencyKey k WHERE k.id = :id AND k.status = com.project2.BookStore.model.IdempotencyKey.Status.IN_PROGRESS")
+    int releaseInProgress(@Param("id") String id);
+
+    @Transactional
+    @Modifying
+    @Query("DELETE FROM IdempotencyKey k WHERE k.expiresAt < :now")
+    int deleteExpired(@Param("now") LocalDateTime now);
+}
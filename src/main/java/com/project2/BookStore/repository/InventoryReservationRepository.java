@@ -0,0 +1,21 @@
+package com.project2.BookStore.repository;
+
+import com.project2.BookStore.model.InventoryReservation;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.Collection;
+
+@Repository
+public interface InventoryReservationRepository extends JpaRepository<InventoryReservation, String> {
+    @Modifying
+    @Query("DELETE FROM InventoryReservation r WHERE r.orderId = :orderId")
+    int deleteByOrderId(@Param("orderId") String orderId);
+
+    @Modifying
+    @Query("DELETE FROM InventoryReservation r WHERE r.orderId IN :orderIds")
+    int deleteByOrderIdIn(@Param("orderIds") Collection<String> orderIds);
+}
@@ -4,31 +4,26 @@ import com.project2.BookStore.model.Order;
 import com.project2.BookStore.model.Order.OrderStatus;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 
 @Repository
-public interface OrderRepository extends JpaRepository<Order, String> {
+public interface OrderRepository extends JpaRepository<Order, String>, JpaSpecificationExecutor<Order> {
     Page<Order> findByStatus(Order.OrderStatus status, Pageable pageable);
     Page<Order> findByUserId(String userId, Pageable pageable);
 
-    @Query("SELECT o FROM Order o WHERE " +
-           "(:status IS NULL OR o.status = :status) AND " +
-           "(:search IS NULL OR " +
-           "o.fullName LIKE %:search% OR " +
-           "o.email LIKE %:search% OR " +
-           "o.phone LIKE %:search% OR " +
-           "o.address LIKE %:search%)")
-    Page<Order> findByStatusAndSearch(
-        @Param("status") Order.OrderStatus status,
-        @Param("search") String search,
-        Pageable pageable
-    );
+    // Bước 2 của việc đọc danh sách đơn: nạp user, chi tiết đơn và sách của cả trang trong một câu query
+    // (các đơn đã có trong persistence context nên chỉ cần gọi, không cần dùng kết quả; thứ tự không đảm bảo)
+    @EntityGraph(attributePaths = {"user", "orderItems", "orderItems.book"})
+    List<Order> findWithDetailsByIdIn(Collection<String> ids);
 
     @Query("SELECT COUNT(o) FROM Order o WHERE o.user.id = :userId AND o.status NOT IN :statuses")
     long countByUserIdAndStatusNotIn(@Param("userId") String userId, @Param("statuses") List<Order.OrderStatus> statuses);
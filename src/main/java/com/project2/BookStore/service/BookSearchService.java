@@ -0,0 +1,59 @@
+package com.project2.BookStore.service;
+
+import com.project2.BookStore.dto.SearchFacetsDTO;
+import com.project2.BookStore.model.Book;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+
+public interface BookSearchService {
+    /**
+     * Dựng lại toàn bộ index từ database
+     */
+    void rebuild();
+
+    /**
+     * Thêm hoặc cập nhật sách trong index, áp dụng sau khi transaction hiện tại commit
+     * @param book Sách đã được lưu
+     */
+    void index(Book book);
+
+    /**
+     * Xóa sách khỏi index, áp dụng sau khi transaction hiện tại commit
+     * @param bookId ID sách
+     */
+    void remove(String bookId);
+
+    /**
+     * Tìm kiếm sách theo từ khóa (không phân biệt dấu) kết hợp các bộ lọc
+     * @param keyword Từ khóa tìm kiếm (tên sách hoặc tác giả)
+     * @param categoryId ID danh mục
+     * @param minPrice Giá tối thiểu
+     * @param maxPrice Giá tối đa
+     * @param inStock Trạng thái tồn kho
+     * @param fuzzy Chấp nhận lỗi chính tả (so khớp gần đúng theo trigram)
+     * @param pageable Phân trang; sắp xếp theo relevance, createdAt, price, sold hoặc mainText
+     * @return Trang ID sách theo đúng thứ tự kết quả
+     */
+    Page<String> search(
+        String keyword,
+        String categoryId,
+        Long minPrice,
+        Long maxPrice,
+        Boolean inStock,
+        boolean fuzzy,
+        Pageable pageable
+    );
+
+    /**
+     * Thống kê kết quả tìm kiếm theo danh mục, khoảng giá, tồn kho trong một lần duyệt index.
+     * Kết quả được cache theo truy vấn đã chuẩn hóa cho tới khi index thay đổi
+     */
+    SearchFacetsDTO facets(
+        String keyword,
+        String categoryId,
+        Long minPrice,
+        Long maxPrice,
+        Boolean inStock,
+        boolean fuzzy
+    );
+}
@@ -6,13 +6,57 @@ import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.web.multipart.MultipartFile;
 import java.util.List;
+import java.util.function.Consumer;
 
 public interface BookService {
     List<BookResponseDTO> getAllBooks() throws BadRequestException;
+
+    /**
+     * Duyệt toàn bộ sách dạng stream, từng sách được chuyển sang DTO rồi giao cho consumer.
+     * Bộ nhớ sử dụng không tăng theo số lượng sách
+     * @param consumer Nơi nhận từng sách (ví dụ ghi thẳng ra response)
+     */
+    void streamAllBooks(Consumer<BookResponseDTO> consumer) throws BadRequestException;
     
     Page<BookResponseDTO> getBooksPaged(Pageable pageable) throws BadRequestException;
+
+    /**
+     * Lấy danh sách sách phân trang theo cursor (keyset), không dùng OFFSET
+     * @param sortBy Trường sắp xếp (createdAt, price, sold, mainText)
+     * @param sortDirection Hướng sắp xếp (asc, desc)
+     * @param cursor Cursor nhận được từ trang trước, null nếu là trang đầu
+     * @param size Số lượng sách mỗi trang
+     * @param includeTotal Có đếm tổng số sách hay không
+     * @return Trang kết quả kèm nextCursor
+     */
+    CursorPageResponse<BookResponseDTO> getBooksByCursor(
+        String sortBy,
+        String sortDirection,
+        String cursor,
+        int size,
+        boolean includeTotal
+    ) throws BadRequestException;
     
     BookResponseDTO getBookById(String id) throws BadRequestException;
+
+    /**
+     * Lấy nhiều sách theo danh sách ID trong một câu query
+     * @param ids Danh sách ID sách (tối đa 200, ID trùng được bỏ qua)
+     * @return Danh sách sách theo thứ tự yêu cầu và các ID không tìm thấy
+     */
+    BookBatchResponseDTO getBooksByIds(List<String> ids) throws BadRequestException;
+
+    /**
+     * Lấy phiên bản của một sách (dùng cho ETag), không nạp entity
+     * @param id ID sách
+     * @return Phiên bản; count = 0 nếu không tìm thấy sách
+     */
+    VersionStampDTO getBookVersion(String id);
+
+    /**
+     * Lấy phiên bản của danh sách sách, gồm cả danh mục vì response có chứa thông tin danh mục
+     */
+    VersionStampDTO getCatalogVersion();
     
     /**
      * Thêm sách mới
@@ -34,6 +78,7 @@ public interface BookService {
      * @param minPrice Giá tối thiểu
      * @param maxPrice Giá tối đa
      * @param inStock Trạng thái tồn kho
+     * @param fuzzy Chấp nhận lỗi chính tả trong từ khóa
      * @param pageable Thông tin phân trang và sắp xếp
      * @return Trang kết quả sách
      * @throws BadRequestException nếu có lỗi xảy ra
@@ -44,9 +89,23 @@ public interface BookService {
         Long minPrice,
         Long maxPrice,
         Boolean inStock,
+        boolean fuzzy,
         Pageable pageable
     ) throws BadRequestException;
 
+    /**
+     * Thống kê kết quả tìm kiếm theo danh mục, khoảng giá và tồn kho với cùng tiêu chí như searchBooks
+     * @return Số sách theo từng danh mục, từng khoảng giá, còn hàng/hết hàng
+     */
+    SearchFacetsDTO getSearchFacets(
+        String keyword,
+        String categoryId,
+        Long minPrice,
+        Long maxPrice,
+        Boolean inStock,
+        boolean fuzzy
+    ) throws BadRequestException;
+
     /**
      * Lấy danh sách sách bán chạy nhất
      * @param limit Số lượng sách cần lấy
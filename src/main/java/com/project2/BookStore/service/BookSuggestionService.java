@@ -0,0 +1,35 @@
+package com.project2.BookStore.service;
+
+import com.project2.BookStore.dto.BookSuggestionDTO;
+import com.project2.BookStore.model.Book;
+import java.util.List;
+
+public interface BookSuggestionService {
+    /**
+     * Dựng lại toàn bộ index gợi ý từ database
+     */
+    void rebuild();
+
+    /**
+     * Gợi ý tên sách/tác giả theo tiền tố người dùng đang gõ (không phân biệt dấu)
+     * @param query Chuỗi người dùng đã gõ
+     * @param limit Số gợi ý tối đa
+     * @return Danh sách gợi ý xếp theo số lượng đã bán giảm dần
+     */
+    List<BookSuggestionDTO> suggest(String query, int limit);
+
+    /**
+     * Thêm hoặc cập nhật sách trong index gợi ý, áp dụng sau khi transaction hiện tại commit
+     */
+    void bookSaved(Book book);
+
+    /**
+     * Xóa sách khỏi index gợi ý, áp dụng sau khi transaction hiện tại commit
+     */
+    void bookDeleted(String bookId);
+
+    /**
+     * Cộng dồn thay đổi số lượng bán của sách, áp dụng sau khi transaction hiện tại commit
+     */
+    void applySoldChange(String bookId, int soldDelta);
+}
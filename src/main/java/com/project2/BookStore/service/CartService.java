@@ -1,6 +1,7 @@
 package com.project2.BookStore.service;
 
 import com.project2.BookStore.model.CartItem;
+import com.project2.BookStore.dto.CartBulkRequest;
 import com.project2.BookStore.dto.CartItemDTO;
 import com.project2.BookStore.dto.CartItemDetailDTO;
 import java.util.List;
@@ -12,4 +13,22 @@ public interface CartService {
     List<CartItemDetailDTO> clearCart(String userId);
     List<CartItemDetailDTO> getCartItems(String userId);
     CartItemDetailDTO getCartItem(String userId, String bookId);
+
+    /**
+     * Áp dụng nhiều thay đổi giỏ hàng cùng lúc (đặt số lượng, 0 là xóa), kiểm tra tồn kho và giới hạn một lần
+     * @param userId ID người dùng
+     * @param items Danh sách thay đổi; cùng một sách xuất hiện nhiều lần thì lấy thay đổi cuối cùng
+     * @return Giỏ hàng sau khi áp dụng
+     */
+    List<CartItemDetailDTO> bulkUpdateCart(String userId, List<CartBulkRequest.Item> items);
+
+    /**
+     * Đảm bảo mọi thay đổi giỏ hàng của user đã được ghi xuống cart_items (trước khi đọc trực tiếp từ bảng)
+     */
+    void flushCart(String userId);
+
+    /**
+     * Báo cart_items của user vừa bị thay đổi trực tiếp (ví dụ sau khi đặt hàng) để bỏ dữ liệu giỏ hàng đã cache
+     */
+    void evictCart(String userId);
 } 
\ No newline at end of file
@@ -0,0 +1,99 @@
+package com.project2.BookStore.service;
+
+import java.util.List;
+import java.util.function.UnaryOperator;
+
+/**
+ * Nơi lưu giỏ hàng phục vụ đọc/ghi nhanh, tách khỏi bảng cart_items.
+ * Bảng cart_items vẫn là bản lưu bền vững; implementation chịu trách nhiệm đồng bộ xuống đó
+ * (ghi trễ theo lô, hoặc một backend khác như Redis).
+ */
+public interface CartStore {
+
+    /**
+     * Một dòng trong giỏ hàng
+     * @param bookId ID sách
+     * @param quantity Số lượng trong giỏ
+     * @param price Đơn giá sách tại thời điểm cập nhật dòng
+     */
+    record Line(String bookId, int quantity, long price) {
+        public long totalPrice() {
+            return price * quantity;
+        }
+    }
+
+    /**
+     * Lấy toàn bộ giỏ hàng của user theo thứ tự thêm vào
+     * @param userId ID người dùng
+     * @return Danh sách dòng trong giỏ (bản sao)
+     */
+    List<Line> getCart(String userId);
+
+    /**
+     * Lấy một dòng trong giỏ hàng
+     * @param userId ID người dùng
+     * @param bookId ID sách
+     * @return Dòng trong giỏ, null nếu sách không có trong giỏ
+     */
+    Line getLine(String userId, String bookId);
+
+    /**
+     * Thêm mới hoặc ghi đè một dòng trong giỏ hàng
+     * @param userId ID người dùng
+     * @param line Dòng cần lưu
+     */
+    void put(String userId, Line line);
+
+    /**
+     * Đọc, kiểm tra và ghi một dòng trong giỏ hàng dưới cùng một khóa của user,
+     * hai thao tác đồng thời trên cùng (user, sách) không thể ghi đè lẫn nhau
+     * @param userId ID người dùng
+     * @param bookId ID sách
+     * @param update Nhận giỏ hàng hiện tại và dòng hiện tại (null nếu chưa có), trả về dòng mới (null để xóa);
+     *               ném exception để hủy, giỏ hàng giữ nguyên
+     * @return Dòng sau khi cập nhật, null nếu đã xóa
+     */
+    Line compute(String userId, String bookId, LineUpdate update);
+
+    /**
+     * Thay toàn bộ giỏ hàng dưới cùng một khóa của user, chỉ các dòng thay đổi được đánh dấu cần ghi
+     * @param userId ID người dùng
+     * @param update Nhận giỏ hàng hiện tại, trả về giỏ hàng mới theo thứ tự mong muốn;
+     *               ném exception để hủy, giỏ hàng giữ nguyên
+     * @return Giỏ hàng sau khi cập nhật
+     */
+    List<Line> computeCart(String userId, UnaryOperator<List<Line>> update);
+
+    @FunctionalInterface
+    interface LineUpdate {
+        Line apply(List<Line> cart, Line existing);
+    }
+
+    /**
+     * Xóa một dòng khỏi giỏ hàng
+     * @param userId ID người dùng
+     * @param bookId ID sách
+     * @return Dòng đã xóa, null nếu sách không có trong giỏ
+     */
+    Line remove(String userId, String bookId);
+
+    /**
+     * Xóa toàn bộ giỏ hàng
+     * @param userId ID người dùng
+     * @return Các dòng đã xóa
+     */
+    List<Line> clear(String userId);
+
+    /**
+     * Ghi ngay các thay đổi chưa lưu của user xuống cart_items (trước khi đọc giỏ hàng trực tiếp từ DB)
+     * @param userId ID người dùng
+     */
+    void flush(String userId);
+
+    /**
+     * Bỏ giỏ hàng của user khỏi bộ nhớ để lần truy cập sau nạp lại từ cart_items
+     * (sau khi cart_items bị thay đổi trực tiếp, ví dụ khi đặt hàng)
+     * @param userId ID người dùng
+     */
+    void evict(String userId);
+}
@@ -0,0 +1,35 @@
+package com.project2.BookStore.service;
+
+import com.project2.BookStore.model.Category;
+import java.util.Optional;
+
+public interface CategoryDirectoryService {
+    /**
+     * Nạp lại toàn bộ danh mục từ database
+     */
+    void reload();
+
+    /**
+     * Tìm danh mục theo ID, ưu tiên bộ nhớ, chỉ truy vấn database khi chưa có
+     * @return Bản sao của danh mục (không được quản lý bởi persistence context)
+     */
+    Optional<Category> findById(String id);
+
+    /**
+     * Tìm danh mục theo tên, nếu chưa có thì tạo mới. An toàn khi nhiều request cùng tạo một tên
+     * @param name Tên danh mục
+     * @param description Mô tả dùng khi phải tạo mới
+     * @return Bản sao của danh mục (không được quản lý bởi persistence context)
+     */
+    Category findOrCreate(String name, String description);
+
+    /**
+     * Cập nhật danh mục trong bộ nhớ sau khi transaction hiện tại commit (thêm mới hoặc đổi tên)
+     */
+    void categorySaved(Category category);
+
+    /**
+     * Xóa danh mục khỏi bộ nhớ sau khi transaction hiện tại commit
+     */
+    void categoryDeleted(String categoryId);
+}
@@ -10,6 +10,18 @@ public interface CategoryService {
     Page<CategoryDTO> getAllCategories(Pageable pageable) throws BadRequestException;
     
     CategoryDTO getCategoryById(String id) throws BadRequestException;
+
+    /**
+     * Lấy phiên bản của một danh mục (dùng cho ETag)
+     * @param id ID danh mục
+     * @return Phiên bản; count = 0 nếu không tìm thấy danh mục
+     */
+    VersionStampDTO getCategoryVersion(String id);
+
+    /**
+     * Lấy phiên bản của toàn bộ danh sách danh mục (dùng cho ETag)
+     */
+    VersionStampDTO getCategoriesVersion();
     
     CategoryDTO addCategory(AddCategoryRequest request) throws BadRequestException;
     
@@ -0,0 +1,48 @@
+package com.project2.BookStore.service;
+
+import com.project2.BookStore.dto.BuyNowRequestDTO;
+import com.project2.BookStore.dto.FlashSaleTicketDTO;
+
+public interface FlashSaleService {
+    /**
+     * Mở flash sale cho một sách với số suất mua cấp sẵn trong bộ nhớ (không vượt quá tồn kho hiện tại)
+     * @param bookId ID sách
+     * @param tokens Tổng số lượng sách được bán qua flash sale
+     */
+    void open(String bookId, int tokens);
+
+    /**
+     * Đóng flash sale của một sách, các suất còn lại bị hủy (tồn kho không thay đổi)
+     * @param bookId ID sách
+     * @return Số suất còn lại tại thời điểm đóng
+     */
+    int close(String bookId);
+
+    /**
+     * Sách có đang mở flash sale hay không (khi đó chỉ được đặt qua flash sale)
+     */
+    boolean isActive(String bookId);
+
+    /**
+     * Nhận yêu cầu mua: trừ suất trong bộ nhớ và đưa vào hàng đợi tạo đơn, trả về vé ngay lập tức
+     * @param request Thông tin mua (giống mua ngay)
+     * @param userId ID người dùng
+     * @return Vé ở trạng thái QUEUED
+     */
+    FlashSaleTicketDTO submit(BuyNowRequestDTO request, String userId);
+
+    /**
+     * Tra cứu trạng thái vé
+     * @param ticketId ID vé
+     * @param userId ID người dùng (chỉ chủ vé được xem)
+     * @return Trạng thái hiện tại của vé
+     */
+    FlashSaleTicketDTO getTicket(String ticketId, String userId);
+
+    /**
+     * Trả lại suất của một đơn flash sale vừa bị hủy (hủy tay hoặc hết hạn giữ tồn kho).
+     * Đơn không thuộc đợt flash sale đang mở thì bỏ qua. Gọi sau khi transaction hủy đơn đã commit
+     * @param orderId ID đơn hàng
+     */
+    void releaseOrder(String orderId);
+}
@@ -0,0 +1,23 @@
+package com.project2.BookStore.service;
+
+import java.util.function.Supplier;
+
+public interface IdempotencyService {
+    /**
+     * Thực hiện action đúng một lần cho mỗi Idempotency-Key.
+     * Request lặp lại (cùng key, cùng nội dung) nhận lại response đã lưu mà không ghi thêm gì;
+     * request trước đó với cùng key vẫn đang xử lý thì báo ConflictException
+     * @param scope Phạm vi của key (ví dụ user + endpoint)
+     * @param idempotencyKey Giá trị header Idempotency-Key, null hoặc rỗng thì chạy action như bình thường
+     * @param request Nội dung request, dùng để phát hiện key bị dùng lại cho request khác
+     * @param responseType Kiểu response cần lưu/đọc lại
+     * @param action Thao tác cần thực hiện
+     * @return Response của lần thực hiện đầu tiên
+     */
+    <T> T execute(String scope, String idempotencyKey, Object request, Class<T> responseType, Supplier<T> action);
+
+    /**
+     * Xóa các key đã hết hạn khỏi database
+     */
+    void cleanupExpired();
+}
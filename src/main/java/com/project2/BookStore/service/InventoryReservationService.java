@@ -0,0 +1,37 @@
+package com.project2.BookStore.service;
+
+import com.project2.BookStore.model.Order;
+
+import java.util.Collection;
+
+public interface InventoryReservationService {
+    /**
+     * Nạp lại lịch hết hạn từ bảng inventory_reservations (dùng khi khởi động)
+     */
+    void reload();
+
+    /**
+     * Giữ tồn kho cho đơn hàng chuyển khoản đang chờ thanh toán; quá hạn mà chưa thanh toán thì đơn bị hủy và hoàn kho.
+     * Đơn COD không cần giữ. Lịch hết hạn được cập nhật sau khi transaction hiện tại commit
+     * @param order Đơn hàng vừa được lưu (đã có ID và danh sách sản phẩm)
+     */
+    void hold(Order order);
+
+    /**
+     * Bỏ giữ tồn kho của đơn hàng (đã thanh toán, đã xác nhận, đã hủy hoặc bị xóa).
+     * Tồn kho không thay đổi; lịch hết hạn được cập nhật sau khi transaction hiện tại commit
+     * @param orderId ID đơn hàng
+     */
+    void release(String orderId);
+
+    /**
+     * Bỏ giữ tồn kho cho nhiều đơn hàng bằng một câu DELETE (dùng khi chuyển trạng thái hàng loạt)
+     * @param orderIds Danh sách ID đơn hàng
+     */
+    void releaseAll(Collection<String> orderIds);
+
+    /**
+     * Hủy theo lô các đơn hàng đã hết hạn giữ tồn kho và hoàn kho cho chúng
+     */
+    void expireDue();
+}
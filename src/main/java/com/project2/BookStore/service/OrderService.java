@@ -1,5 +1,7 @@
 package com.project2.BookStore.service;
 
+import com.project2.BookStore.dto.CursorPageResponse;
+import com.project2.BookStore.dto.OrderBulkStatusResponseDTO;
 import com.project2.BookStore.dto.BuyNowRequestDTO;
 import com.project2.BookStore.dto.OrderRequestDTO;
 import com.project2.BookStore.dto.OrderResponseDTO;
@@ -8,6 +10,8 @@ import com.project2.BookStore.model.Order;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 
+import java.util.List;
+
 public interface OrderService {
     OrderResponseDTO createOrder(OrderRequestDTO request, String userId);
     OrderResponseDTO buyNow(BuyNowRequestDTO request, String userId);
@@ -15,8 +19,11 @@ public interface OrderService {
     Page<OrderResponseDTO> getUserOrders(String userId, Pageable pageable);
     Page<OrderResponseDTO> getAllOrders(Pageable pageable);
     Page<OrderResponseDTO> getAllOrdersForAdmin(Pageable pageable, Order.OrderStatus status, String search);
+    CursorPageResponse<OrderResponseDTO> getAllOrdersForAdminByCursor(Order.OrderStatus status, String search, String cursor, int size, boolean includeTotal);
     Page<OrderResponseDTO> getOrdersByUser(String userId, Pageable pageable);
     OrderResponseDTO updateOrderStatus(String orderId, Order.OrderStatus status);
+    OrderResponseDTO updateOrderStatus(String orderId, Order.OrderStatus status, Long expectedVersion);
+    OrderBulkStatusResponseDTO bulkUpdateOrderStatus(List<String> orderIds, Order.OrderStatus status);
     OrderResponseDTO cancelOrder(String orderId);
     Page<OrderWithDetailsDTO> getOrdersPaged(Pageable pageable);
     OrderResponseDTO deleteOrder(String orderId);
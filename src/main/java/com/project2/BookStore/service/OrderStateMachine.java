@@ -0,0 +1,28 @@
+package com.project2.BookStore.service;
+
+import com.project2.BookStore.model.Order;
+
+import java.util.Collection;
+import java.util.Set;
+
+public interface OrderStateMachine {
+    /**
+     * Chuyển trạng thái đơn hàng bằng một câu lệnh: UPDATE có điều kiện (trạng thái nguồn hợp lệ, đúng version)
+     * và ghi lịch sử vào order_status_transitions. Không dùng cho đơn đang được nạp trong persistence context
+     * của transaction hiện tại (entity sẽ không thấy thay đổi)
+     * @param orderId ID đơn hàng
+     * @param target Trạng thái mới, phải là bước hợp lệ theo {@link Order.OrderStatus#canTransitionTo}
+     * @param expectedVersion Version client đang giữ; null thì chỉ kiểm tra trạng thái nguồn
+     * @return Trạng thái của đơn trước khi chuyển
+     */
+    Order.OrderStatus transition(String orderId, Order.OrderStatus target, Long expectedVersion);
+
+    /**
+     * Chuyển trạng thái nhiều đơn hàng bằng một câu lệnh (không kiểm tra version), cùng điều kiện và lịch sử như
+     * {@link #transition}. Đơn không ở trạng thái nguồn hợp lệ thì bỏ qua
+     * @param orderIds Danh sách ID đơn hàng
+     * @param target Trạng thái mới
+     * @return ID các đơn đã được chuyển
+     */
+    Set<String> transitionAll(Collection<String> orderIds, Order.OrderStatus target);
+}
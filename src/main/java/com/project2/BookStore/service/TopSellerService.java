@@ -0,0 +1,45 @@
+package com.project2.BookStore.service;
+
+import com.project2.BookStore.dto.BookResponseDTO;
+import com.project2.BookStore.model.Book;
+import com.project2.BookStore.model.Category;
+import java.util.List;
+
+public interface TopSellerService {
+    /**
+     * Nạp lại toàn bộ bảng xếp hạng từ database (dùng khi khởi động và đối soát định kỳ)
+     */
+    void rebuild();
+
+    /**
+     * Lấy danh sách sách bán chạy nhất, không truy cập database
+     * @param limit Số lượng sách cần lấy
+     * @return Danh sách sách theo số lượng đã bán giảm dần
+     */
+    List<BookResponseDTO> getTopSellers(int limit);
+
+    /**
+     * Thêm hoặc cập nhật sách (thông tin + số lượng đã bán), áp dụng sau khi transaction hiện tại commit
+     * @param book Sách đã được lưu, cần có category
+     */
+    void bookSaved(Book book);
+
+    /**
+     * Xóa sách khỏi bảng xếp hạng, áp dụng sau khi transaction hiện tại commit
+     * @param bookId ID sách
+     */
+    void bookDeleted(String bookId);
+
+    /**
+     * Cộng dồn thay đổi số lượng bán (tồn kho thay đổi ngược chiều), áp dụng sau khi transaction hiện tại commit
+     * @param bookId ID sách
+     * @param soldDelta Số lượng bán thêm (âm khi hoàn trả đơn hàng)
+     */
+    void applySoldChange(String bookId, int soldDelta);
+
+    /**
+     * Cập nhật thông tin danh mục trong các sách đang được cache, áp dụng sau khi transaction hiện tại commit
+     * @param category Danh mục đã được lưu
+     */
+    void categorySaved(Category category);
+}
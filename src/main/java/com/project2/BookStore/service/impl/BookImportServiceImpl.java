@@ -6,8 +6,12 @@ import com.project2.BookStore.exception.BadRequestException;
 import com.project2.BookStore.model.Book;
 import com.project2.BookStore.model.Category;
 import com.project2.BookStore.repository.BookRepository;
-import com.project2.BookStore.repository.CategoryRepository;
 import com.project2.BookStore.service.BookImportService;
+import com.project2.BookStore.service.BookSearchService;
+import com.project2.BookStore.service.TopSellerService;
+import com.project2.BookStore.service.BookSuggestionService;
+import com.project2.BookStore.service.CategoryDirectoryService;
+import com.project2.BookStore.util.CatalogVersion;
 import com.project2.BookStore.service.ImageProcessingService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -32,7 +36,11 @@ import java.util.*;
 public class BookImportServiceImpl implements BookImportService {
 
     private final BookRepository bookRepository;
-    private final CategoryRepository categoryRepository;
+    private final BookSearchService bookSearchService;
+    private final TopSellerService topSellerService;
+    private final BookSuggestionService bookSuggestionService;
+    private final CatalogVersion catalogVersion;
+    private final CategoryDirectoryService categoryDirectoryService;
     private final ImageProcessingService imageProcessingService;
 
     @Override
@@ -176,12 +184,7 @@ public class BookImportServiceImpl implements BookImportService {
                     }
 
                     // Find or create category with proper encoding
-                    Category category = categoryRepository.findByName(categoryName)
-                            .orElseGet(() -> {
-                                Category newCategory = new Category();
-                                newCategory.setName(categoryName.trim());
-                                return categoryRepository.save(newCategory);
-                            });
+                    Category category = categoryDirectoryService.findOrCreate(categoryName.trim(), null);
 
                     // Create and save book
                     Book book = new Book();
@@ -190,10 +193,15 @@ public class BookImportServiceImpl implements BookImportService {
                     book.setPrice(price);
                     book.setQuantity(quantity);
                     book.setCategoryId(category.getId());
+                    book.setCategory(category);
                     book.setImage(image);
                     book.setSold(0);
 
                     Book savedBook = bookRepository.save(book);
+                    bookSearchService.index(savedBook);
+                    topSellerService.bookSaved(savedBook);
+                    bookSuggestionService.bookSaved(savedBook);
+                    catalogVersion.bumpAfterCommit();
                     successList.add(convertToDTO(savedBook));
                     successCount++;
 
@@ -0,0 +1,465 @@
+package com.project2.BookStore.service.impl;
+
+import com.project2.BookStore.dto.SearchFacetsDTO;
+import com.project2.BookStore.model.Book;
+import com.project2.BookStore.repository.BookRepository;
+import com.project2.BookStore.service.BookSearchService;
+import com.project2.BookStore.util.LruCache;
+import com.project2.BookStore.util.TransactionUtil;
+import com.project2.BookStore.util.VietnameseTextUtil;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Index đảo ngược (inverted index) trong bộ nhớ cho tìm kiếm sách theo tên/tác giả.
+ * Từ khóa được bỏ dấu trước khi so khớp nên "sach" khớp với "sách".
+ * Từ cuối cùng của từ khóa được so khớp theo tiền tố để hỗ trợ gõ dở ("nha gi" -> "nhà giả kim").
+ * Thời gian tìm kiếm phụ thuộc số sách khớp, không phụ thuộc tổng số sách trong bảng.
+ * Chế độ fuzzy so khớp thêm các term có độ tương đồng trigram (Jaccard) đủ lớn để chấp nhận lỗi chính tả,
+ * index trigram được dựng trên tập từ vựng nên chi phí không tăng theo số sách.
+ */
+@Slf4j
+@Service
+public class BookSearchServiceImpl implements BookSearchService {
+    // Từ khóa xuất hiện trong tên sách được đánh giá cao hơn trong tên tác giả
+    private static final double TITLE_WEIGHT = 3.0;
+    private static final double AUTHOR_WEIGHT = 1.0;
+    // Điểm cộng khi tên sách chứa nguyên cụm từ khóa
+    private static final double PHRASE_BONUS = 5.0;
+    // Term chỉ khớp theo tiền tố bị giảm điểm so với khớp nguyên từ
+    private static final double PREFIX_FACTOR = 0.8;
+    private static final int FACET_CACHE_SIZE = 1000;
+
+    @Autowired
+    private BookRepository bookRepository;
+
+    // Các mốc giá chia khoảng cho facet, ví dụ 50000,100000 -> [0, 50000), [50000, 100000), [100000, ...)
+    @Value("${bookstore.search.price-buckets:50000,100000,200000,500000}")
+    private long[] priceBuckets;
+
+    // Độ tương đồng trigram tối thiểu để một term được coi là khớp gần đúng (giống pg_trgm mặc định)
+    @Value("${bookstore.search.fuzzy-threshold:0.3}")
+    private double fuzzyThreshold;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private Map<String, IndexedBook> documents = new HashMap<>();
+    // term -> (bookId -> trọng số)
+    private TreeMap<String, Map<String, Double>> postings = new TreeMap<>();
+    // trigram -> các term trong từ vựng chứa trigram đó
+    private Map<String, Set<String>> trigramTerms = new HashMap<>();
+    // Tăng mỗi khi index thay đổi, là một phần của khóa cache nên cache cũ tự hết hiệu lực
+    private final AtomicLong version = new AtomicLong();
+    private final LruCache<String, SearchFacetsDTO> facetCache = new LruCache<>(FACET_CACHE_SIZE);
+
+    @PostConstruct
+    public void init() {
+        Arrays.sort(priceBuckets);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public void rebuild() {
+        long start = System.currentTimeMillis();
+        Map<String, IndexedBook> newDocuments = new HashMap<>();
+        TreeMap<String, Map<String, Double>> newPostings = new TreeMap<>();
+        Map<String, Set<String>> newTrigramTerms = new HashMap<>();
+        try (Stream<Book> books = bookRepository.streamAllWithCategory()) {
+            books.forEach(book -> addDocument(newDocuments, newPostings, newTrigramTerms, IndexedBook.of(book)));
+        }
+
+        lock.writeLock().lock();
+        try {
+            documents = newDocuments;
+            postings = newPostings;
+            trigramTerms = newTrigramTerms;
+            version.incrementAndGet();
+        } finally {
+            lock.writeLock().unlock();
+        }
+        log.info("Đã dựng index tìm kiếm - Số sách: {}, Số term: {}, Thời gian: {}ms",
+            newDocuments.size(), newPostings.size(), System.currentTimeMillis() - start);
+    }
+
+    @Override
+    public void index(Book book) {
+        TransactionUtil.afterCommit(() -> {
+            IndexedBook document = IndexedBook.of(book);
+            lock.writeLock().lock();
+            try {
+                removeDocument(documents, postings, trigramTerms, document.id());
+                addDocument(documents, postings, trigramTerms, document);
+                version.incrementAndGet();
+            } finally {
+                lock.writeLock().unlock();
+            }
+        });
+    }
+
+    @Override
+    public void remove(String bookId) {
+        TransactionUtil.afterCommit(() -> {
+            lock.writeLock().lock();
+            try {
+                removeDocument(documents, postings, trigramTerms, bookId);
+                version.incrementAndGet();
+            } finally {
+                lock.writeLock().unlock();
+            }
+        });
+    }
+
+    @Override
+    public Page<String> search(
+        String keyword,
+        String categoryId,
+        Long minPrice,
+        Long maxPrice,
+        Boolean inStock,
+        boolean fuzzy,
+        Pageable pageable
+    ) {
+        List<String> terms = VietnameseTextUtil.tokenize(keyword);
+        String phrase = String.join(" ", terms);
+        List<ScoredBook> hits = new ArrayList<>();
+
+        lock.readLock().lock();
+        try {
+            Map<String, Double> scores = terms.isEmpty() ? matchAll() : matchTerms(terms, fuzzy);
+            for (Map.Entry<String, Double> entry : scores.entrySet()) {
+                IndexedBook document = documents.get(entry.getKey());
+                if (document == null || !matchesFilters(document, categoryId, minPrice, maxPrice, inStock)) {
+                    continue;
+                }
+                double score = entry.getValue();
+                if (!phrase.isEmpty() && document.foldedTitle().contains(phrase)) {
+                    score += PHRASE_BONUS;
+                }
+                hits.add(new ScoredBook(document, score));
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        hits.sort(comparatorFor(pageable.getSort(), !terms.isEmpty()));
+        int from = (int) Math.min(pageable.getOffset(), hits.size());
+        int to = Math.min(from + pageable.getPageSize(), hits.size());
+        List<String> ids = hits.subList(from, to).stream()
+            .map(hit -> hit.document().id())
+            .collect(Collectors.toList());
+        return new PageImpl<>(ids, pageable, hits.size());
+    }
+
+    @Override
+    public SearchFacetsDTO facets(
+        String keyword,
+        String categoryId,
+        Long minPrice,
+        Long maxPrice,
+        Boolean inStock,
+        boolean fuzzy
+    ) {
+        List<String> terms = VietnameseTextUtil.tokenize(keyword);
+        String normalizedCategoryId = categoryId != null && !categoryId.trim().isEmpty() ? categoryId : null;
+
+        lock.readLock().lock();
+        try {
+            String cacheKey = String.join("|", String.valueOf(version.get()), String.join(" ", terms),
+                String.valueOf(normalizedCategoryId), String.valueOf(minPrice), String.valueOf(maxPrice), String.valueOf(inStock), String.valueOf(fuzzy));
+            SearchFacetsDTO cached = facetCache.get(cacheKey);
+            if (cached != null) {
+                return cached;
+            }
+
+            Map<String, Long> categoryCounts = new HashMap<>();
+            long[] bucketCounts = new long[priceBuckets.length + 1];
+            long inStockCount = 0;
+            long outOfStockCount = 0;
+
+            Collection<String> ids = terms.isEmpty() ? documents.keySet() : matchTerms(terms, fuzzy).keySet();
+            for (String id : ids) {
+                IndexedBook document = documents.get(id);
+                if (document == null) {
+                    continue;
+                }
+                boolean categoryMatched = matchesCategory(document, normalizedCategoryId);
+                boolean priceMatched = matchesPrice(document, minPrice, maxPrice);
+                boolean stockMatched = matchesStock(document, inStock);
+
+                if (priceMatched && stockMatched) {
+                    categoryCounts.merge(document.categoryId(), 1L, Long::sum);
+                }
+                if (categoryMatched && stockMatched) {
+                    bucketCounts[bucketIndex(document.price())]++;
+                }
+                if (categoryMatched && priceMatched) {
+                    if (document.quantity() > 0) {
+                        inStockCount++;
+                    } else {
+                        outOfStockCount++;
+                    }
+                }
+            }
+
+            List<SearchFacetsDTO.CategoryFacet> categories = categoryCounts.entrySet().stream()
+                .map(entry -> new SearchFacetsDTO.CategoryFacet(entry.getKey(), entry.getValue()))
+                .sorted(Comparator.comparingLong(SearchFacetsDTO.CategoryFacet::getCount).reversed()
+                    .thenComparing(SearchFacetsDTO.CategoryFacet::getCategoryId))
+                .collect(Collectors.toList());
+            List<SearchFacetsDTO.PriceRangeFacet> priceRanges = new ArrayList<>();
+            for (int i = 0; i < bucketCounts.length; i++) {
+                Long from = i == 0 ? 0L : priceBuckets[i - 1];
+                Long to = i < priceBuckets.length ? priceBuckets[i] : null;
+                priceRanges.add(new SearchFacetsDTO.PriceRangeFacet(from, to, bucketCounts[i]));
+            }
+
+            SearchFacetsDTO facets = new SearchFacetsDTO(categories, priceRanges, inStockCount, outOfStockCount);
+            facetCache.put(cacheKey, facets);
+            return facets;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Số mốc giá nhỏ hơn hoặc bằng giá sách chính là vị trí khoảng giá
+    private int bucketIndex(long price) {
+        int index = Arrays.binarySearch(priceBuckets, price);
+        return index >= 0 ? index + 1 : -index - 1;
+    }
+
+    // Mọi từ đều phải khớp (AND), điểm là tổng điểm các từ
+    private Map<String, Double> matchTerms(List<String> terms, boolean fuzzy) {
+        Map<String, Double> scores = null;
+        for (int i = 0; i < terms.size(); i++) {
+            Map<String, Double> matches = matchTerm(terms.get(i), i == terms.size() - 1, fuzzy);
+            if (scores == null) {
+                scores = new HashMap<>(matches);
+            } else {
+                scores.keySet().retainAll(matches.keySet());
+                scores.replaceAll((id, score) -> score + matches.get(id));
+            }
+            if (scores.isEmpty()) {
+                break;
+            }
+        }
+        return scores;
+    }
+
+    private Map<String, Double> matchTerm(String term, boolean prefix, boolean fuzzy) {
+        // term trong index -> hệ số điểm (1 khớp nguyên từ, thấp hơn nếu chỉ khớp tiền tố/gần đúng)
+        Map<String, Double> candidates = new HashMap<>();
+        if (prefix) {
+            postings.subMap(term, true, term + Character.MAX_VALUE, true).keySet()
+                .forEach(candidate -> candidates.put(candidate, candidate.equals(term) ? 1.0 : PREFIX_FACTOR));
+        } else if (postings.containsKey(term)) {
+            candidates.put(term, 1.0);
+        }
+        if (fuzzy) {
+            similarTerms(term).forEach((candidate, similarity) -> candidates.merge(candidate, similarity, Math::max));
+        }
+
+        Map<String, Double> matches = new HashMap<>();
+        for (Map.Entry<String, Double> candidate : candidates.entrySet()) {
+            Map<String, Double> posting = postings.get(candidate.getKey());
+            double idf = Math.log(1 + (double) documents.size() / posting.size());
+            double factor = candidate.getValue();
+            // Một sách khớp nhiều term chỉ lấy điểm cao nhất
+            posting.forEach((id, weight) -> matches.merge(id, weight * idf * factor, Math::max));
+        }
+        return matches;
+    }
+
+    // Các term trong từ vựng có độ tương đồng trigram (Jaccard) với term cần tìm >= ngưỡng
+    private Map<String, Double> similarTerms(String term) {
+        Set<String> queryTrigrams = trigrams(term);
+        Map<String, Integer> shared = new HashMap<>();
+        for (String trigram : queryTrigrams) {
+            for (String candidate : trigramTerms.getOrDefault(trigram, Set.of())) {
+                shared.merge(candidate, 1, Integer::sum);
+            }
+        }
+
+        Map<String, Double> similar = new HashMap<>();
+        shared.forEach((candidate, count) -> {
+            double similarity = (double) count / (queryTrigrams.size() + trigrams(candidate).size() - count);
+            if (similarity >= fuzzyThreshold) {
+                similar.put(candidate, similarity);
+            }
+        });
+        return similar;
+    }
+
+    // Trigram của một từ, thêm khoảng trắng ở đầu/cuối như pg_trgm để từ ngắn vẫn có trigram
+    private static Set<String> trigrams(String term) {
+        String padded = "  " + term + " ";
+        Set<String> result = new HashSet<>();
+        for (int i = 0; i + 3 <= padded.length(); i++) {
+            result.add(padded.substring(i, i + 3));
+        }
+        return result;
+    }
+
+    private Map<String, Double> matchAll() {
+        Map<String, Double> scores = new HashMap<>();
+        documents.keySet().forEach(id -> scores.put(id, 0.0));
+        return scores;
+    }
+
+    private boolean matchesFilters(IndexedBook document, String categoryId, Long minPrice, Long maxPrice, Boolean inStock) {
+        return matchesCategory(document, categoryId)
+            && matchesPrice(document, minPrice, maxPrice)
+            && matchesStock(document, inStock);
+    }
+
+    private boolean matchesCategory(IndexedBook document, String categoryId) {
+        return categoryId == null || categoryId.trim().isEmpty() || categoryId.equals(document.categoryId());
+    }
+
+    private boolean matchesPrice(IndexedBook document, Long minPrice, Long maxPrice) {
+        return (minPrice == null || document.price() >= minPrice)
+            && (maxPrice == null || document.price() <= maxPrice);
+    }
+
+    private boolean matchesStock(IndexedBook document, Boolean inStock) {
+        return inStock == null || inStock == (document.quantity() > 0);
+    }
+
+    private Comparator<ScoredBook> comparatorFor(Sort sort, boolean hasKeyword) {
+        Sort.Order order = sort.stream().findFirst().orElse(null);
+        String property = order != null ? order.getProperty() : (hasKeyword ? "relevance" : "createdAt");
+        boolean descending = order == null || order.isDescending();
+
+        Comparator<ScoredBook> comparator;
+        switch (property) {
+            case "relevance":
+                // Điểm cao nhất lên đầu, cùng điểm thì ưu tiên sách bán chạy
+                return Comparator.comparingDouble(ScoredBook::score).reversed()
+                    .thenComparing(hit -> hit.document().sold(), Comparator.reverseOrder())
+                    .thenComparing(hit -> hit.document().id());
+            case "price":
+                comparator = Comparator.comparingLong(hit -> hit.document().price());
+                break;
+            case "sold":
+                comparator = Comparator.comparingInt(hit -> hit.document().sold());
+                break;
+            case "mainText":
+                comparator = Comparator.comparing(hit -> hit.document().foldedTitle());
+                break;
+            case "createdAt":
+                comparator = Comparator.comparing(hit -> hit.document().createdAt(),
+                    Comparator.nullsFirst(Comparator.naturalOrder()));
+                break;
+            default:
+                throw new IllegalArgumentException("Không hỗ trợ sắp xếp theo trường: " + property);
+        }
+        if (descending) {
+            comparator = comparator.reversed();
+        }
+        return comparator.thenComparing(hit -> hit.document().id());
+    }
+
+    private static void addDocument(Map<String, IndexedBook> documents,
+                                    TreeMap<String, Map<String, Double>> postings,
+                                    Map<String, Set<String>> trigramTerms,
+                                    IndexedBook document) {
+        documents.put(document.id(), document);
+        document.termWeights().forEach((term, weight) -> {
+            Map<String, Double> posting = postings.get(term);
+            if (posting == null) {
+                // Term mới xuất hiện trong từ vựng
+                posting = new HashMap<>();
+                postings.put(term, posting);
+                for (String trigram : trigrams(term)) {
+                    trigramTerms.computeIfAbsent(trigram, key -> new HashSet<>()).add(term);
+                }
+            }
+            posting.put(document.id(), weight);
+        });
+    }
+
+    private static void removeDocument(Map<String, IndexedBook> documents,
+                                       TreeMap<String, Map<String, Double>> postings,
+                                       Map<String, Set<String>> trigramTerms,
+                                       String bookId) {
+        IndexedBook old = documents.remove(bookId);
+        if (old == null) {
+            return;
+        }
+        for (String term : old.termWeights().keySet()) {
+            Map<String, Double> posting = postings.get(term);
+            if (posting != null) {
+                posting.remove(bookId);
+                if (posting.isEmpty()) {
+                    // Không còn sách nào chứa term này, gỡ khỏi từ vựng
+                    postings.remove(term);
+                    for (String trigram : trigrams(term)) {
+                        Set<String> terms = trigramTerms.get(trigram);
+                        if (terms != null) {
+                            terms.remove(term);
+                            if (terms.isEmpty()) {
+                                trigramTerms.remove(trigram);
+                            }
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    // Bản chụp các trường cần cho tìm kiếm, lọc và sắp xếp của một cuốn sách
+    private record IndexedBook(
+        String id,
+        String categoryId,
+        long price,
+        int quantity,
+        int sold,
+        LocalDateTime createdAt,
+        String foldedTitle,
+        Map<String, Double> termWeights
+    ) {
+        static IndexedBook of(Book book) {
+            Map<String, Double> weights = new HashMap<>();
+            VietnameseTextUtil.tokenize(book.getMainText()).stream().distinct()
+                .forEach(term -> weights.merge(term, TITLE_WEIGHT, Double::sum));
+            VietnameseTextUtil.tokenize(book.getAuthor()).stream().distinct()
+                .forEach(term -> weights.merge(term, AUTHOR_WEIGHT, Double::sum));
+            return new IndexedBook(
+                book.getId(),
+                book.getCategoryId(),
+                book.getPrice() != null ? book.getPrice() : 0L,
+                book.getQuantity() != null ? book.getQuantity() : 0,
+                book.getSold() != null ? book.getSold() : 0,
+                book.getCreatedAt(),
+                String.join(" ", VietnameseTextUtil.tokenize(book.getMainText())),
+                weights
+            );
+        }
+    }
+
+    private record ScoredBook(IndexedBook document, double score) {
+    }
+}
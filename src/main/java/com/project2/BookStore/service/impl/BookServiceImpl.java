@@ -5,6 +5,10 @@ import com.project2.BookStore.model.Category;
 import com.project2.BookStore.repository.BookRepository;
 import com.project2.BookStore.repository.CategoryRepository;
 import com.project2.BookStore.service.BookService;
+import com.project2.BookStore.service.BookSearchService;
+import com.project2.BookStore.service.TopSellerService;
+import com.project2.BookStore.service.BookSuggestionService;
+import com.project2.BookStore.service.CategoryDirectoryService;
 import com.project2.BookStore.service.ImageProcessingService;
 import com.project2.BookStore.service.CategoryService;
 import com.project2.BookStore.exception.BadRequestException;
@@ -14,7 +18,17 @@ import com.project2.BookStore.dto.UpdateBookRequest;
 import com.project2.BookStore.dto.CategoryDTO;
 import com.project2.BookStore.dto.AddCategoryRequest;
 import com.project2.BookStore.dto.SearchBookRequest;
+import com.project2.BookStore.dto.CursorPageResponse;
+import com.project2.BookStore.dto.VersionStampDTO;
+import com.project2.BookStore.dto.BookBatchResponseDTO;
+import com.project2.BookStore.dto.SearchFacetsDTO;
+import com.project2.BookStore.util.CatalogVersion;
+import com.project2.BookStore.util.CursorUtil;
+import com.project2.BookStore.util.LruCache;
+import com.project2.BookStore.util.VietnameseTextUtil;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import jakarta.annotation.PostConstruct;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.data.domain.Page;
@@ -32,12 +46,31 @@ import org.hibernate.Hibernate;
 import java.util.Map;
 import java.math.BigDecimal;
 import org.springframework.data.jpa.domain.Specification;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.Expression;
+import jakarta.persistence.criteria.JoinType;
 import jakarta.persistence.criteria.Predicate;
+import jakarta.persistence.criteria.Root;
+import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
 
 @Slf4j
 @Service
 public class BookServiceImpl implements BookService {
+    // Các trường được phép dùng làm khóa sắp xếp khi phân trang bằng cursor
+    private static final Set<String> CURSOR_SORT_FIELDS = Set.of("createdAt", "price", "sold", "mainText");
+    // Số ID tối đa trong một lần lấy sách theo lô
+    private static final int MAX_BATCH_SIZE = 200;
+
     @Autowired
     private BookRepository bookRepository;
 
@@ -53,10 +86,39 @@ public class BookServiceImpl implements BookService {
     @Autowired
     private CategoryService categoryService;
 
+    @Autowired
+    private BookSearchService bookSearchService;
+
+    @Autowired
+    private TopSellerService topSellerService;
+
+    @Autowired
+    private BookSuggestionService bookSuggestionService;
+
+    @Autowired
+    private CatalogVersion catalogVersion;
+
+    @Autowired
+    private CategoryDirectoryService categoryDirectoryService;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Value("${bookstore.search.result-cache-size:1000}")
+    private int searchResultCacheSize;
+
+    // Cache kết quả searchBooks theo truy vấn đã chuẩn hóa + version catalog
+    private LruCache<String, Page<BookResponseDTO>> searchResultCache;
+
+    @PostConstruct
+    public void init() {
+        searchResultCache = new LruCache<>(searchResultCacheSize);
+    }
+
     @Override
     public List<BookResponseDTO> getAllBooks() throws BadRequestException {
         try {
-            List<Book> books = bookRepository.findAll();
+            List<Book> books = bookRepository.findAllWithCategory();
             return books.stream()
                 .map(BookResponseDTO::new)
                 .collect(Collectors.toList());
@@ -65,6 +127,24 @@ public class BookServiceImpl implements BookService {
         }
     }
 
+    @Override
+    @Transactional(readOnly = true)
+    public void streamAllBooks(Consumer<BookResponseDTO> consumer) throws BadRequestException {
+        log.info("Bắt đầu stream danh sách tất cả sách");
+        long count = 0;
+        try (Stream<Book> books = bookRepository.streamAllWithCategory()) {
+            Iterator<Book> iterator = books.iterator();
+            while (iterator.hasNext()) {
+                Book book = iterator.next();
+                consumer.accept(new BookResponseDTO(book));
+                // Bỏ sách khỏi persistence context để session không giữ lại toàn bộ catalog
+                entityManager.detach(book);
+                count++;
+            }
+        }
+        log.info("Đã stream {} sách", count);
+    }
+
     @Override
     @Transactional(readOnly = true)
     public Page<BookResponseDTO> getBooksPaged(Pageable pageable) throws BadRequestException {
@@ -124,10 +204,125 @@ public class BookServiceImpl implements BookService {
         }
     }
 
+    @Override
+    @Transactional(readOnly = true)
+    public CursorPageResponse<BookResponseDTO> getBooksByCursor(
+        String sortBy,
+        String sortDirection,
+        String cursor,
+        int size,
+        boolean includeTotal
+    ) throws BadRequestException {
+        try {
+            if (!CURSOR_SORT_FIELDS.contains(sortBy)) {
+                throw new BadRequestException("Không hỗ trợ phân trang cursor theo trường: " + sortBy);
+            }
+            Sort.Direction direction = Sort.Direction.fromString(sortDirection);
+            // Luôn thêm id để thứ tự là duy nhất, tránh trùng/mất sách giữa các trang
+            Sort sort = Sort.by(direction, sortBy).and(Sort.by(direction, "id"));
+
+            Specification<Book> spec = (root, query, cb) -> cb.conjunction();
+            if (cursor != null && !cursor.isBlank()) {
+                String[] parts = CursorUtil.decode(cursor, 4);
+                if (!parts[0].equals(sortBy) || !parts[1].equalsIgnoreCase(direction.name())) {
+                    throw new BadRequestException("Cursor không khớp với tiêu chí sắp xếp hiện tại");
+                }
+                Comparable<?> lastValue = parseCursorValue(sortBy, parts[2]);
+                String lastId = parts[3];
+                spec = (root, query, cb) -> seekPredicate(cb, root, sortBy, lastValue, lastId, direction.isDescending());
+            }
+
+            // Lấy dư 1 bản ghi để biết còn trang sau hay không, không cần COUNT
+            List<Book> books = bookRepository.findBy(withCategory(spec), q -> q.sortBy(sort).limit(size + 1).all());
+            boolean hasNext = books.size() > size;
+            if (hasNext) {
+                books = books.subList(0, size);
+            }
+
+            String nextCursor = null;
+            if (hasNext) {
+                Book last = books.get(books.size() - 1);
+                nextCursor = CursorUtil.encode(sortBy, direction.name(), cursorValueOf(last, sortBy), last.getId());
+            }
+
+            List<BookResponseDTO> bookDTOs = books.stream()
+                .map(BookResponseDTO::new)
+                .collect(Collectors.toList());
+            Long total = includeTotal ? bookRepository.count() : null;
+
+            log.info("Lấy danh sách sách theo cursor - Sort: {} {}, Size: {}, Số sách: {}, Còn trang sau: {}",
+                sortBy, direction, size, bookDTOs.size(), hasNext);
+            return new CursorPageResponse<>(bookDTOs, size, nextCursor, hasNext, total);
+        } catch (BadRequestException e) {
+            throw e;
+        } catch (Exception e) {
+            log.error("Lỗi khi lấy danh sách sách theo cursor: {}", e.getMessage(), e);
+            throw new BadRequestException("Lỗi khi lấy danh sách sách: " + e.getMessage());
+        }
+    }
+
+    // Fetch join category cho các query dùng Specification không đi qua entity graph của repository
+    private Specification<Book> withCategory(Specification<Book> spec) {
+        return (root, query, cb) -> {
+            if (query.getResultType() != Long.class && query.getResultType() != long.class) {
+                root.fetch("category", JoinType.LEFT);
+            }
+            return spec.toPredicate(root, query, cb);
+        };
+    }
+
+    private String cursorValueOf(Book book, String field) {
+        switch (field) {
+            case "createdAt":
+                return book.getCreatedAt().toString();
+            case "price":
+                return String.valueOf(book.getPrice());
+            case "sold":
+                return String.valueOf(book.getSold());
+            default:
+                return book.getMainText();
+        }
+    }
+
+    private Comparable<?> parseCursorValue(String field, String value) {
+        try {
+            switch (field) {
+                case "createdAt":
+                    return LocalDateTime.parse(value);
+                case "price":
+                    return Long.valueOf(value);
+                case "sold":
+                    return Integer.valueOf(value);
+                default:
+                    return value;
+            }
+        } catch (Exception e) {
+            throw new BadRequestException("Cursor không hợp lệ");
+        }
+    }
+
+    // (field, id) < (lastValue, lastId) với DESC, > với ASC
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private Predicate seekPredicate(CriteriaBuilder cb, Root<Book> root, String field,
+                                    Comparable lastValue, String lastId, boolean descending) {
+        Expression<Comparable> path = root.get(field);
+        Expression<String> idPath = root.get("id");
+        if (descending) {
+            return cb.or(
+                cb.lessThan(path, lastValue),
+                cb.and(cb.equal(path, lastValue), cb.lessThan(idPath, lastId))
+            );
+        }
+        return cb.or(
+            cb.greaterThan(path, lastValue),
+            cb.and(cb.equal(path, lastValue), cb.greaterThan(idPath, lastId))
+        );
+    }
+
     @Override
     public BookResponseDTO getBookById(String id) throws BadRequestException {
         try {
-            Book book = bookRepository.findById(id)
+            Book book = bookRepository.findWithCategoryById(id)
                 .orElseThrow(() -> new BadRequestException("Không tìm thấy sách với ID: " + id));
             return new BookResponseDTO(book);
         } catch (BadRequestException e) {
@@ -137,6 +332,55 @@ public class BookServiceImpl implements BookService {
         }
     }
 
+    @Override
+    @Transactional(readOnly = true)
+    public BookBatchResponseDTO getBooksByIds(List<String> ids) throws BadRequestException {
+        if (ids == null || ids.isEmpty()) {
+            throw new BadRequestException("Danh sách ID sách không được để trống");
+        }
+        // Bỏ ID rỗng/trùng nhưng giữ thứ tự client gửi lên
+        Set<String> uniqueIds = new LinkedHashSet<>();
+        for (String id : ids) {
+            if (id != null && !id.trim().isEmpty()) {
+                uniqueIds.add(id.trim());
+            }
+        }
+        if (uniqueIds.isEmpty()) {
+            throw new BadRequestException("Danh sách ID sách không được để trống");
+        }
+        if (uniqueIds.size() > MAX_BATCH_SIZE) {
+            throw new BadRequestException("Chỉ được lấy tối đa " + MAX_BATCH_SIZE + " sách mỗi lần");
+        }
+
+        try {
+            List<String> orderedIds = new ArrayList<>(uniqueIds);
+            List<BookResponseDTO> books = findBooksInOrder(orderedIds);
+            Set<String> foundIds = books.stream()
+                .map(BookResponseDTO::getId)
+                .collect(Collectors.toSet());
+            List<String> missingIds = orderedIds.stream()
+                .filter(id -> !foundIds.contains(id))
+                .collect(Collectors.toList());
+
+            log.info("Lấy sách theo lô - Số ID: {}, Tìm thấy: {}, Không tìm thấy: {}",
+                orderedIds.size(), books.size(), missingIds.size());
+            return new BookBatchResponseDTO(books, missingIds);
+        } catch (Exception e) {
+            log.error("Lỗi khi lấy sách theo lô: {}", e.getMessage(), e);
+            throw new BadRequestException("Lỗi khi lấy danh sách sách: " + e.getMessage());
+        }
+    }
+
+    @Override
+    public VersionStampDTO getBookVersion(String id) {
+        return bookRepository.findVersionById(id);
+    }
+
+    @Override
+    public VersionStampDTO getCatalogVersion() {
+        return bookRepository.findCatalogVersion().merge(categoryRepository.findAllVersion());
+    }
+
     @Override
     @Transactional(rollbackFor = Exception.class)
     public BookResponseDTO addBook(AddBookRequest request) {
@@ -167,13 +411,8 @@ public class BookServiceImpl implements BookService {
                 throw new BadRequestException("Tên danh mục không được là UUID");
             }
 
-            category = categoryRepository.findByName(request.getCategoryName())
-                .orElseGet(() -> {
-                    Category newCategory = new Category();
-                    newCategory.setName(request.getCategoryName());
-                    newCategory.setDescription("Danh mục " + request.getCategoryName());
-                    return categoryRepository.save(newCategory);
-                });
+            category = categoryDirectoryService.findOrCreate(
+                request.getCategoryName(), "Danh mục " + request.getCategoryName());
         } catch (Exception e) {
             if (e instanceof BadRequestException) {
                 throw e;
@@ -221,6 +460,10 @@ public class BookServiceImpl implements BookService {
         try {
             // Lưu sách và kiểm tra kết quả
             book = bookRepository.save(book);
+            bookSearchService.index(book);
+            topSellerService.bookSaved(book);
+            bookSuggestionService.bookSaved(book);
+            catalogVersion.bumpAfterCommit();
             log.info("Đã lưu sách thành công. BookId: {}, Image: {}", 
                 book.getId(), 
                 book.getImage() != null ? "có ảnh" : "không có ảnh");
@@ -259,17 +502,12 @@ public class BookServiceImpl implements BookService {
                 if (request.getCategoryName().matches("[0-9a-fA-F]{8}-[0-9a-fA-F]{4}-[0-9a-fA-F]{4}-[0-9a-fA-F]{4}-[0-9a-fA-F]{12}")) {
                     throw new BadRequestException("Tên danh mục không được là UUID");
                 }
-                Category category = categoryRepository.findByName(request.getCategoryName())
-                    .orElseGet(() -> {
-                        Category newCategory = new Category();
-                        newCategory.setName(request.getCategoryName());
-                        newCategory.setDescription("Danh mục " + request.getCategoryName());
-                        return categoryRepository.save(newCategory);
-                    });
+                Category category = categoryDirectoryService.findOrCreate(
+                    request.getCategoryName(), "Danh mục " + request.getCategoryName());
                 book.setCategoryId(category.getId());
                 book.setCategory(category);
             } else if (request.getCategoryId() != null) {
-                Category category = categoryRepository.findById(request.getCategoryId())
+                Category category = categoryDirectoryService.findById(request.getCategoryId())
                     .orElseThrow(() -> new BadRequestException("Không tìm thấy thể loại với ID: " + request.getCategoryId()));
                 book.setCategoryId(request.getCategoryId());
                 book.setCategory(category);
@@ -298,6 +536,10 @@ public class BookServiceImpl implements BookService {
             }
 
             Book updatedBook = bookRepository.save(book);
+            bookSearchService.index(updatedBook);
+            topSellerService.bookSaved(updatedBook);
+            bookSuggestionService.bookSaved(updatedBook);
+            catalogVersion.bumpAfterCommit();
             log.info("Đã cập nhật sách thành công - ID: {}, Category: {}", 
                     updatedBook.getId(), 
                     updatedBook.getCategoryId());
@@ -320,6 +562,10 @@ public class BookServiceImpl implements BookService {
                 throw new BadRequestException("Không tìm thấy sách với ID: " + id);
             }
             bookRepository.deleteById(id);
+            bookSearchService.remove(id);
+            topSellerService.bookDeleted(id);
+            bookSuggestionService.bookDeleted(id);
+            catalogVersion.bumpAfterCommit();
         } catch (BadRequestException e) {
             throw e;
         } catch (Exception e) {
@@ -330,7 +576,7 @@ public class BookServiceImpl implements BookService {
     @Override
     public Page<BookResponseDTO> getBooksByCategoryPaged(String categoryId, Pageable pageable) throws BadRequestException {
         try {
-            if (!categoryRepository.existsById(categoryId)) {
+            if (categoryDirectoryService.findById(categoryId).isEmpty()) {
                 throw new BadRequestException("Không tìm thấy thể loại với ID: " + categoryId);
             }
 
@@ -353,25 +599,62 @@ public class BookServiceImpl implements BookService {
         Long minPrice,
         Long maxPrice,
         Boolean inStock,
+        boolean fuzzy,
+        Pageable pageable
+    ) throws BadRequestException {
+        // Đọc version trước khi query để kết quả cũ không bao giờ bị lưu dưới version mới
+        String cacheKey = String.join("|",
+            String.valueOf(catalogVersion.current()),
+            String.join(" ", VietnameseTextUtil.tokenize(keyword)),
+            categoryId != null && !categoryId.trim().isEmpty() ? categoryId : "",
+            String.valueOf(minPrice),
+            String.valueOf(maxPrice),
+            String.valueOf(inStock),
+            String.valueOf(fuzzy),
+            String.valueOf(pageable.getPageNumber()),
+            String.valueOf(pageable.getPageSize()),
+            pageable.getSort().toString());
+        Page<BookResponseDTO> cached = searchResultCache.get(cacheKey);
+        if (cached != null) {
+            log.info("Lấy kết quả tìm kiếm sách từ cache - Keyword: {}", keyword);
+            return cached;
+        }
+
+        Page<BookResponseDTO> result = executeSearch(keyword, categoryId, minPrice, maxPrice, inStock, fuzzy, pageable);
+        searchResultCache.put(cacheKey, result);
+        return result;
+    }
+
+    private Page<BookResponseDTO> executeSearch(
+        String keyword,
+        String categoryId,
+        Long minPrice,
+        Long maxPrice,
+        Boolean inStock,
+        boolean fuzzy,
         Pageable pageable
     ) throws BadRequestException {
         try {
             log.info("Bắt đầu tìm kiếm sách với các tiêu chí - Keyword: {}, CategoryId: {}, MinPrice: {}, MaxPrice: {}, InStock: {}",
                 keyword, categoryId, minPrice, maxPrice, inStock);
 
+            // Có từ khóa: tìm trên index (bỏ dấu, xếp hạng theo độ liên quan), sau đó chỉ nạp các sách của trang hiện tại
+            if (keyword != null && !keyword.trim().isEmpty()) {
+                Page<String> idPage = bookSearchService.search(keyword, categoryId, minPrice, maxPrice, inStock, fuzzy, pageable);
+                log.info("Tìm thấy {} sách phù hợp với tiêu chí tìm kiếm", idPage.getTotalElements());
+                return new PageImpl<>(findBooksInOrder(idPage.getContent()), pageable, idPage.getTotalElements());
+            }
+
+            // Không có từ khóa thì không có độ liên quan, sắp xếp mặc định theo ngày tạo
+            if (pageable.getSort().getOrderFor("relevance") != null) {
+                pageable = PageRequest.of(pageable.getPageNumber(), pageable.getPageSize(),
+                    Sort.by(Sort.Direction.DESC, "createdAt"));
+            }
+
             // Tạo specification trực tiếp trong service
             Specification<Book> spec = (root, query, cb) -> {
                 List<Predicate> predicates = new ArrayList<>();
                 
-                // Tìm kiếm theo keyword (tên sách hoặc tác giả)
-                if (keyword != null && !keyword.trim().isEmpty()) {
-                    String likePattern = "%" + keyword.toLowerCase() + "%";
-                    predicates.add(cb.or(
-                        cb.like(cb.lower(root.get("mainText")), likePattern),
-                        cb.like(cb.lower(root.get("author")), likePattern)
-                    ));
-                }
-                
                 // Lọc theo category
                 if (categoryId != null && !categoryId.trim().isEmpty()) {
                     predicates.add(cb.equal(root.get("categoryId"), categoryId));
@@ -411,15 +694,28 @@ public class BookServiceImpl implements BookService {
         }
     }
 
+    @Override
+    public SearchFacetsDTO getSearchFacets(
+        String keyword,
+        String categoryId,
+        Long minPrice,
+        Long maxPrice,
+        Boolean inStock,
+        boolean fuzzy
+    ) throws BadRequestException {
+        try {
+            return bookSearchService.facets(keyword, categoryId, minPrice, maxPrice, inStock, fuzzy);
+        } catch (Exception e) {
+            log.error("Lỗi khi thống kê kết quả tìm kiếm: {}", e.getMessage(), e);
+            throw new BadRequestException("Lỗi khi thống kê kết quả tìm kiếm: " + e.getMessage());
+        }
+    }
+
     @Override
     public List<BookResponseDTO> getTopSellingBooks(int limit) throws BadRequestException {
         try {
             log.info("Lấy danh sách {} sách bán chạy nhất", limit);
-            Pageable pageable = PageRequest.of(0, limit);
-            List<Book> books = bookRepository.findAllByOrderBySoldDesc(pageable);
-            return books.stream()
-                .map(BookResponseDTO::new)
-                .collect(Collectors.toList());
+            return topSellerService.getTopSellers(limit);
         } catch (Exception e) {
             log.error("Lỗi khi lấy danh sách sách bán chạy: {}", e.getMessage(), e);
             throw new BadRequestException("Lỗi khi lấy danh sách sách bán chạy: " + e.getMessage());
@@ -460,16 +756,25 @@ public class BookServiceImpl implements BookService {
     public Page<BookResponseDTO> searchBooksByKeyword(String keyword, Pageable pageable) throws BadRequestException {
         try {
             log.info("Tìm kiếm sách theo từ khóa: {}", keyword);
-            Page<Book> bookPage = bookRepository.findByMainTextContainingIgnoreCaseOrAuthorContainingIgnoreCase(
-                keyword, keyword, pageable
-            );
-            List<BookResponseDTO> bookDTOs = bookPage.getContent().stream()
-                .map(BookResponseDTO::new)
-                .collect(Collectors.toList());
-            return new PageImpl<>(bookDTOs, pageable, bookPage.getTotalElements());
+            Page<String> idPage = bookSearchService.search(keyword, null, null, null, null, false, pageable);
+            return new PageImpl<>(findBooksInOrder(idPage.getContent()), pageable, idPage.getTotalElements());
         } catch (Exception e) {
             log.error("Lỗi khi tìm kiếm sách theo từ khóa: {}", e.getMessage(), e);
             throw new BadRequestException("Lỗi khi tìm kiếm sách: " + e.getMessage());
         }
     }
-} 
\ No newline at end of file
+
+    // Nạp sách theo danh sách ID trong một câu query và giữ đúng thứ tự của danh sách
+    private List<BookResponseDTO> findBooksInOrder(List<String> ids) {
+        if (ids.isEmpty()) {
+            return new ArrayList<>();
+        }
+        Map<String, Book> booksById = bookRepository.findAllWithCategoryByIdIn(ids).stream()
+            .collect(Collectors.toMap(Book::getId, Function.identity()));
+        return ids.stream()
+            .map(booksById::get)
+            .filter(Objects::nonNull)
+            .map(BookResponseDTO::new)
+            .collect(Collectors.toList());
+    }
+}
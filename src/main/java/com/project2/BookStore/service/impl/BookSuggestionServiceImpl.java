@@ -0,0 +1,334 @@
+package com.project2.BookStore.service.impl;
+
+import com.project2.BookStore.dto.BookSuggestionDTO;
+import com.project2.BookStore.model.Book;
+import com.project2.BookStore.repository.BookRepository;
+import com.project2.BookStore.service.BookSuggestionService;
+import com.project2.BookStore.util.TransactionUtil;
+import com.project2.BookStore.util.VietnameseTextUtil;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Gợi ý tìm kiếm (typeahead) trên index tiền tố trong bộ nhớ.
+ * Mỗi tên sách/tác giả được đăng ký với các khóa bắt đầu từ mỗi từ đã bỏ dấu,
+ * ví dụ "Nhà Giả Kim" -> "nha gia kim", "gia kim", "kim", nên gõ "gia k" vẫn tìm được.
+ * Tra cứu là một lần duyệt khoảng trên TreeMap, không truy cập database; mọi gợi ý khớp tiền tố đều được xét
+ * qua một heap giới hạn `limit` phần tử, nên tiền tố ngắn vẫn trả đúng các gợi ý bán chạy nhất.
+ * Sách thay đổi trong lúc dựng lại index được đọc lại từ database trước khi thay index mới.
+ */
+@Slf4j
+@Service
+public class BookSuggestionServiceImpl implements BookSuggestionService {
+    private static final String TYPE_TITLE = "title";
+    private static final String TYPE_AUTHOR = "author";
+    // Bán nhiều hơn đứng trước, bằng nhau thì theo tên
+    private static final Comparator<Ranked> RANKING = Comparator.comparingInt(Ranked::sold).reversed()
+        .thenComparing(ranked -> ranked.suggestion().text);
+
+    @Autowired
+    private BookRepository bookRepository;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private Index index = new Index();
+    // Sách thay đổi trong lúc đang dựng lại index, null khi không dựng lại. Được bảo vệ bởi khóa ghi
+    private Set<String> changedBooks;
+
+    @Override
+    @Transactional(readOnly = true)
+    @Scheduled(initialDelayString = "${bookstore.suggestion.rebuild-interval-ms:600000}",
+               fixedDelayString = "${bookstore.suggestion.rebuild-interval-ms:600000}")
+    public void rebuild() {
+        long start = System.currentTimeMillis();
+        lock.writeLock().lock();
+        try {
+            changedBooks = new HashSet<>();
+        } finally {
+            lock.writeLock().unlock();
+        }
+
+        try {
+            Index newIndex = new Index();
+            try (Stream<Book> books = bookRepository.streamAllWithCategory()) {
+                books.forEach(book -> newIndex.addBook(book.getId(), book.getMainText(), book.getAuthor(), book.getSold()));
+            }
+
+            // Đọc lại sách thay đổi trong lúc stream; lần cuối trong khóa ghi để không callback nào chen vào trước khi thay
+            refresh(newIndex, takeChangedBooks());
+            lock.writeLock().lock();
+            try {
+                refresh(newIndex, takeChangedBooks());
+                index = newIndex;
+            } finally {
+                lock.writeLock().unlock();
+            }
+            log.info("Đã dựng index gợi ý tìm kiếm - Số gợi ý: {}, Số khóa: {}, Thời gian: {}ms",
+                newIndex.suggestions.size(), newIndex.keys.size(), System.currentTimeMillis() - start);
+        } finally {
+            lock.writeLock().lock();
+            try {
+                changedBooks = null;
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+    }
+
+    @Override
+    public List<BookSuggestionDTO> suggest(String query, int limit) {
+        String prefix = String.join(" ", VietnameseTextUtil.tokenize(query));
+        if (prefix.isEmpty() || limit <= 0) {
+            return new ArrayList<>();
+        }
+
+        lock.readLock().lock();
+        try {
+            // Heap min theo thứ tự xếp hạng: phần tử đầu là gợi ý kém nhất trong top hiện tại
+            PriorityQueue<Ranked> top = new PriorityQueue<>(limit + 1, RANKING.reversed());
+            Set<String> seen = new HashSet<>();
+            for (Set<String> ids : index.keys.subMap(prefix, true, prefix + Character.MAX_VALUE, true).values()) {
+                for (String id : ids) {
+                    // Một gợi ý có thể khớp nhiều khóa trong cùng khoảng
+                    if (!seen.add(id)) {
+                        continue;
+                    }
+                    Suggestion suggestion = index.suggestions.get(id);
+                    Ranked ranked = new Ranked(suggestion, suggestion.sold);
+                    if (top.size() < limit) {
+                        top.add(ranked);
+                    } else if (RANKING.compare(ranked, top.peek()) < 0) {
+                        top.poll();
+                        top.add(ranked);
+                    }
+                }
+            }
+            List<Ranked> result = new ArrayList<>(top);
+            result.sort(RANKING);
+            return result.stream()
+                .map(ranked -> new BookSuggestionDTO(ranked.suggestion().text, ranked.suggestion().type,
+                    ranked.suggestion().bookId, ranked.sold()))
+                .collect(Collectors.toList());
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public void bookSaved(Book book) {
+        String id = book.getId();
+        String title = book.getMainText();
+        String author = book.getAuthor();
+        int sold = book.getSold() != null ? book.getSold() : 0;
+        TransactionUtil.afterCommit(() -> {
+            lock.writeLock().lock();
+            try {
+                index.removeBook(id);
+                index.addBook(id, title, author, sold);
+                markChanged(id);
+            } finally {
+                lock.writeLock().unlock();
+            }
+        });
+    }
+
+    @Override
+    public void bookDeleted(String bookId) {
+        TransactionUtil.afterCommit(() -> {
+            lock.writeLock().lock();
+            try {
+                index.removeBook(bookId);
+                markChanged(bookId);
+            } finally {
+                lock.writeLock().unlock();
+            }
+        });
+    }
+
+    @Override
+    public void applySoldChange(String bookId, int soldDelta) {
+        TransactionUtil.afterCommit(() -> {
+            lock.writeLock().lock();
+            try {
+                index.adjustSold(bookId, soldDelta);
+                markChanged(bookId);
+            } finally {
+                lock.writeLock().unlock();
+            }
+        });
+    }
+
+    // Phải được gọi khi đang giữ khóa ghi
+    private void markChanged(String bookId) {
+        if (changedBooks != null) {
+            changedBooks.add(bookId);
+        }
+    }
+
+    private Set<String> takeChangedBooks() {
+        lock.writeLock().lock();
+        try {
+            Set<String> taken = changedBooks;
+            changedBooks = new HashSet<>();
+            return taken;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Thay các sách đã thay đổi trong index mới bằng dữ liệu hiện tại trong database
+    private void refresh(Index target, Set<String> bookIds) {
+        if (bookIds.isEmpty()) {
+            return;
+        }
+        // Bỏ các entity đã nạp khi stream để đọc được giá trị mới nhất
+        entityManager.clear();
+        Map<String, Book> current = bookRepository.findAllWithCategoryByIdIn(bookIds).stream()
+            .collect(Collectors.toMap(Book::getId, Function.identity()));
+        for (String bookId : bookIds) {
+            target.removeBook(bookId);
+            Book book = current.get(bookId);
+            if (book != null) {
+                target.addBook(book.getId(), book.getMainText(), book.getAuthor(), book.getSold());
+            }
+        }
+    }
+
+    // Một gợi ý (tên sách hoặc tác giả); tác giả gộp số lượng bán của tất cả sách của họ
+    private static class Suggestion {
+        private final String id;
+        private final String text;
+        private final String type;
+        private final String bookId;
+        private final Map<String, Integer> soldByBook = new HashMap<>();
+        private final Set<String> keys = new HashSet<>();
+        // Tổng soldByBook, cập nhật cùng lúc để không phải cộng lại khi xếp hạng
+        private int sold;
+
+        Suggestion(String id, String text, String type, String bookId) {
+            this.id = id;
+            this.text = text;
+            this.type = type;
+            this.bookId = bookId;
+        }
+
+        void putSold(String bookId, int bookSold) {
+            Integer previous = soldByBook.put(bookId, bookSold);
+            sold += bookSold - (previous != null ? previous : 0);
+        }
+
+        void addSold(String bookId, int soldDelta) {
+            if (soldByBook.containsKey(bookId)) {
+                putSold(bookId, soldByBook.get(bookId) + soldDelta);
+            }
+        }
+
+        void removeSold(String bookId) {
+            Integer previous = soldByBook.remove(bookId);
+            if (previous != null) {
+                sold -= previous;
+            }
+        }
+    }
+
+    // Gợi ý kèm số lượng bán tại thời điểm tra cứu
+    private record Ranked(Suggestion suggestion, int sold) {
+    }
+
+    private static class Index {
+        // khóa đã chuẩn hóa -> id gợi ý
+        private final TreeMap<String, Set<String>> keys = new TreeMap<>();
+        private final Map<String, Suggestion> suggestions = new HashMap<>();
+        // bookId -> id gợi ý tác giả của sách đó, để gỡ đúng khi sách bị sửa/xóa
+        private final Map<String, String> authorOfBook = new HashMap<>();
+
+        void addBook(String bookId, String title, String author, int sold) {
+            Suggestion titleSuggestion = new Suggestion(TYPE_TITLE + ":" + bookId, title, TYPE_TITLE, bookId);
+            titleSuggestion.putSold(bookId, sold);
+            register(titleSuggestion);
+
+            String authorKey = String.join(" ", VietnameseTextUtil.tokenize(author));
+            if (!authorKey.isEmpty()) {
+                String authorId = TYPE_AUTHOR + ":" + authorKey;
+                Suggestion authorSuggestion = suggestions.get(authorId);
+                if (authorSuggestion == null) {
+                    authorSuggestion = new Suggestion(authorId, author, TYPE_AUTHOR, null);
+                    register(authorSuggestion);
+                }
+                authorSuggestion.putSold(bookId, sold);
+                authorOfBook.put(bookId, authorId);
+            }
+        }
+
+        void removeBook(String bookId) {
+            unregister(suggestions.get(TYPE_TITLE + ":" + bookId));
+            String authorId = authorOfBook.remove(bookId);
+            if (authorId != null) {
+                Suggestion authorSuggestion = suggestions.get(authorId);
+                authorSuggestion.removeSold(bookId);
+                if (authorSuggestion.soldByBook.isEmpty()) {
+                    unregister(authorSuggestion);
+                }
+            }
+        }
+
+        void adjustSold(String bookId, int soldDelta) {
+            Suggestion titleSuggestion = suggestions.get(TYPE_TITLE + ":" + bookId);
+            if (titleSuggestion != null) {
+                titleSuggestion.addSold(bookId, soldDelta);
+            }
+            String authorId = authorOfBook.get(bookId);
+            if (authorId != null) {
+                suggestions.get(authorId).addSold(bookId, soldDelta);
+            }
+        }
+
+        private void register(Suggestion suggestion) {
+            suggestions.put(suggestion.id, suggestion);
+            List<String> tokens = VietnameseTextUtil.tokenize(suggestion.text);
+            for (int i = 0; i < tokens.size(); i++) {
+                String key = String.join(" ", tokens.subList(i, tokens.size()));
+                suggestion.keys.add(key);
+                keys.computeIfAbsent(key, k -> new HashSet<>()).add(suggestion.id);
+            }
+        }
+
+        private void unregister(Suggestion suggestion) {
+            if (suggestion == null) {
+                return;
+            }
+            suggestions.remove(suggestion.id);
+            for (String key : suggestion.keys) {
+                Set<String> ids = keys.get(key);
+                if (ids != null) {
+                    ids.remove(suggestion.id);
+                    if (ids.isEmpty()) {
+                        keys.remove(key);
+                    }
+                }
+            }
+        }
+    }
+}
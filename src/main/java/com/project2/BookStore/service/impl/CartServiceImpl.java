@@ -2,29 +2,49 @@ package com.project2.BookStore.service.impl;
 
 import com.project2.BookStore.model.CartItem;
 import com.project2.BookStore.model.Book;
-import com.project2.BookStore.model.User;
+import com.project2.BookStore.dto.CartBulkRequest;
 import com.project2.BookStore.dto.CartItemDTO;
 import com.project2.BookStore.dto.CartItemDetailDTO;
+import com.project2.BookStore.dto.CartTotalsDTO;
 import com.project2.BookStore.repository.CartItemRepository;
 import com.project2.BookStore.repository.BookRepository;
 import com.project2.BookStore.repository.UserRepository;
 import com.project2.BookStore.service.CartService;
 import com.project2.BookStore.exception.BadRequestException;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.Optional;
+import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 import lombok.extern.slf4j.Slf4j;
 import java.util.ArrayList;
 
+// Mặc định: đọc/ghi giỏ hàng trực tiếp trên cart_items. Khi bật bookstore.cart.write-behind.enabled
+// thì WriteBehindCartServiceImpl được dùng thay thế
 @Slf4j
 @Service
+@ConditionalOnProperty(name = "bookstore.cart.write-behind.enabled", havingValue = "false", matchIfMissing = true)
 public class CartServiceImpl implements CartService {
-    private static final int MAX_TOTAL_ITEMS = 500000000;
-    private static final long MAX_TOTAL_VALUE = 2000000000; 
+    static final int MAX_TOTAL_ITEMS = 500000000;
+    static final long MAX_TOTAL_VALUE = 2000000000; 
+
+    private static final String BULK_DELETE_SQL = "DELETE FROM cart_items WHERE user_id = ? AND book_id = ?";
+    private static final String BULK_UPDATE_SQL =
+        "UPDATE cart_items SET quantity = ?, total_price = ?, updated_at = now() WHERE user_id = ? AND book_id = ?";
+    // Dòng có thể vừa được thêm bởi request khác, khi đó ghi đè theo giá trị của lô
+    private static final String BULK_INSERT_SQL =
+        "INSERT INTO cart_items (id, user_id, book_id, quantity, total_price, created_at, updated_at) " +
+        "VALUES (?, ?, ?, ?, ?, now(), now()) " +
+        "ON CONFLICT (user_id, book_id) DO UPDATE " +
+        "SET quantity = EXCLUDED.quantity, total_price = EXCLUDED.total_price, updated_at = now()";
 
     @Autowired
     private CartItemRepository cartItemRepository;
@@ -35,17 +55,65 @@ public class CartServiceImpl implements CartService {
     @Autowired
     private UserRepository userRepository;
 
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    // Gộp các thay đổi theo sách, cùng một sách xuất hiện nhiều lần thì lấy thay đổi cuối cùng
+    static Map<String, Integer> normalizeBulkItems(List<CartBulkRequest.Item> items) {
+        Map<String, Integer> changes = new LinkedHashMap<>();
+        for (CartBulkRequest.Item item : items) {
+            String bookId = item.getBookId().trim();
+            changes.remove(bookId);
+            changes.put(bookId, item.getQuantity());
+        }
+        return changes;
+    }
+
+    static void validateBulkLine(Book book, String bookId, int quantity) {
+        if (book == null) {
+            throw new BadRequestException("Không tìm thấy sách với ID: " + bookId);
+        }
+        if (book.getPrice() <= 0) {
+            throw new BadRequestException("Giá sách không hợp lệ");
+        }
+        if (book.getQuantity() < quantity) {
+            throw new BadRequestException(
+                String.format("Số lượng sách '%s' trong kho không đủ. Còn lại: %d",
+                    book.getMainText(), book.getQuantity())
+            );
+        }
+    }
+
+    // Kiểm tra giới hạn trên giỏ hàng sau khi đã áp dụng toàn bộ thay đổi
+    static void validateBulkTotals(long totalItems, long totalValue) {
+        if (totalItems > MAX_TOTAL_ITEMS) {
+            throw new BadRequestException(
+                String.format("Tổng số lượng sách trong giỏ không được vượt quá %d. Sau khi cập nhật: %d",
+                    MAX_TOTAL_ITEMS, totalItems)
+            );
+        }
+        if (totalValue > MAX_TOTAL_VALUE) {
+            throw new BadRequestException(
+                String.format("Tổng giá trị giỏ hàng không được vượt quá %d. Sau khi cập nhật: %d",
+                    MAX_TOTAL_VALUE, totalValue)
+            );
+        }
+    }
+
+    private CartItem toCartItem(Book book, int quantity) {
+        CartItem cartItem = new CartItem();
+        cartItem.setBook(book);
+        cartItem.setQuantity(quantity);
+        cartItem.setTotalPrice(book.getPrice() * quantity);
+        return cartItem;
+    }
+
     private void validateCartLimits(String userId, int newQuantity, long newItemPrice) {
         try {
-            // Tính tổng số lượng hiện tại trong giỏ hàng
-            int currentTotalItems = cartItemRepository.findByUser_Id(userId).stream()
-                .mapToInt(CartItem::getQuantity)
-                .sum();
-
-            // Tính tổng giá trị hiện tại của giỏ hàng
-            long currentTotalValue = cartItemRepository.findByUser_Id(userId).stream()
-                .mapToLong(CartItem::getTotalPrice)
-                .sum();
+            // Tính tổng số lượng và tổng giá trị hiện tại của giỏ hàng trong một câu query
+            CartTotalsDTO totals = cartItemRepository.getCartTotals(userId);
+            long currentTotalItems = totals.getTotalItems();
+            long currentTotalValue = totals.getTotalValue();
 
             // Kiểm tra tổng số lượng
             if (currentTotalItems + newQuantity > MAX_TOTAL_ITEMS) {
@@ -88,10 +156,6 @@ public class CartServiceImpl implements CartService {
     public CartItem addToCart(String userId, CartItemDTO cartItemDTO) {
         log.info("Bắt đầu thêm sách vào giỏ hàng. UserId: {}, BookId: {}", userId, cartItemDTO.getBookId());
         try {
-            // Validate user
-            User user = userRepository.findById(userId)
-                .orElseThrow(() -> new BadRequestException("Không tìm thấy người dùng"));
-
             // Validate book
             Book book = bookRepository.findById(cartItemDTO.getBookId())
                 .orElseThrow(() -> new BadRequestException("Không tìm thấy sách"));
@@ -107,39 +171,18 @@ public class CartServiceImpl implements CartService {
             // Validate cart limits
             validateCartLimits(userId, cartItemDTO.getQuantity(), book.getPrice());
 
-            // Check if book already in cart
-            Optional<CartItem> existingItem = cartItemRepository.findByUser_IdAndBook_Id(userId, cartItemDTO.getBookId());
-            CartItem cartItem;
-
-            if (existingItem.isPresent()) {
-                cartItem = existingItem.get();
-                int newQuantity = cartItem.getQuantity() + cartItemDTO.getQuantity();
-                
-                // Validate total quantity
-                if (newQuantity > book.getQuantity()) {
-                    throw new BadRequestException(
-                        String.format("Tổng số lượng sách '%s' trong giỏ vượt quá số lượng trong kho. Còn lại: %d", 
-                            book.getMainText(), book.getQuantity())
-                    );
-                }
-                
-                cartItem.setQuantity(newQuantity);
-                cartItem.setTotalPrice(book.getPrice() * newQuantity);
-                log.info("Cập nhật số lượng sách trong giỏ hàng. BookId: {}, Số lượng mới: {}", 
-                    cartItemDTO.getBookId(), newQuantity);
-            } else {
-                cartItem = new CartItem();
-                cartItem.setUser(user);
-                cartItem.setBook(book);
-                cartItem.setQuantity(cartItemDTO.getQuantity());
-                cartItem.setTotalPrice(book.getPrice() * cartItemDTO.getQuantity());
-                log.info("Thêm sách mới vào giỏ hàng. BookId: {}, Số lượng: {}", 
-                    cartItemDTO.getBookId(), cartItemDTO.getQuantity());
+            // Thêm mới hoặc cộng dồn trong một câu lệnh; tổng số lượng không được vượt quá tồn kho
+            Integer newQuantity = cartItemRepository.upsertQuantity(UUID.randomUUID().toString(), userId,
+                book.getId(), cartItemDTO.getQuantity(), book.getPrice(), book.getQuantity());
+            if (newQuantity == null) {
+                throw new BadRequestException(
+                    String.format("Tổng số lượng sách '%s' trong giỏ vượt quá số lượng trong kho. Còn lại: %d", 
+                        book.getMainText(), book.getQuantity())
+                );
             }
 
-            CartItem savedItem = cartItemRepository.save(cartItem);
-            log.info("Lưu giỏ hàng thành công. CartItemId: {}", savedItem.getId());
-            return savedItem;
+            log.info("Lưu giỏ hàng thành công. BookId: {}, Số lượng trong giỏ: {}", book.getId(), newQuantity);
+            return toCartItem(book, newQuantity);
         } catch (BadRequestException e) {
             log.warn("Lỗi khi thêm sách vào giỏ hàng: {}", e.getMessage());
             throw e;
@@ -272,4 +315,96 @@ public class CartServiceImpl implements CartService {
             throw new BadRequestException("Không thể lấy thông tin sách trong giỏ hàng: " + e.getMessage());
         }
     }
+
+    @Override
+    @Transactional
+    public List<CartItemDetailDTO> bulkUpdateCart(String userId, List<CartBulkRequest.Item> items) {
+        log.info("Bắt đầu cập nhật giỏ hàng theo lô. UserId: {}, Số thay đổi: {}", userId, items.size());
+        try {
+            if (!userRepository.existsById(userId)) {
+                throw new BadRequestException("Không tìm thấy người dùng");
+            }
+            Map<String, Integer> changes = normalizeBulkItems(items);
+
+            // Giỏ hàng hiện tại và toàn bộ sách liên quan, mỗi loại một câu query
+            Map<String, CartItem> current = cartItemRepository.findByUser_Id(userId).stream()
+                .collect(Collectors.toMap(CartItem::getBookId, Function.identity(), (a, b) -> a, LinkedHashMap::new));
+            Set<String> bookIds = new HashSet<>(current.keySet());
+            bookIds.addAll(changes.keySet());
+            Map<String, Book> books = bookRepository.findAllWithCategoryByIdIn(bookIds).stream()
+                .collect(Collectors.toMap(Book::getId, Function.identity()));
+
+            // Tính giỏ hàng sau khi áp dụng thay đổi và kiểm tra một lần
+            Map<String, Integer> result = new LinkedHashMap<>();
+            current.forEach((bookId, item) -> result.put(bookId, item.getQuantity()));
+            List<Object[]> deletes = new ArrayList<>();
+            List<Object[]> updates = new ArrayList<>();
+            List<Object[]> inserts = new ArrayList<>();
+            for (Map.Entry<String, Integer> change : changes.entrySet()) {
+                String bookId = change.getKey();
+                int quantity = change.getValue();
+                CartItem existing = current.get(bookId);
+                if (quantity == 0) {
+                    if (existing != null) {
+                        result.remove(bookId);
+                        deletes.add(new Object[]{userId, bookId});
+                    }
+                    continue;
+                }
+                Book book = books.get(bookId);
+                validateBulkLine(book, bookId, quantity);
+                result.put(bookId, quantity);
+                long totalPrice = book.getPrice() * quantity;
+                if (existing == null) {
+                    inserts.add(new Object[]{UUID.randomUUID().toString(), userId, bookId, quantity, totalPrice});
+                } else if (existing.getQuantity() != quantity || existing.getTotalPrice() != totalPrice) {
+                    updates.add(new Object[]{quantity, totalPrice, userId, bookId});
+                }
+            }
+
+            long totalItems = 0;
+            long totalValue = 0;
+            for (Map.Entry<String, Integer> entry : result.entrySet()) {
+                totalItems += entry.getValue();
+                totalValue += changes.containsKey(entry.getKey())
+                    ? books.get(entry.getKey()).getPrice() * entry.getValue()
+                    : current.get(entry.getKey()).getTotalPrice();
+            }
+            validateBulkTotals(totalItems, totalValue);
+
+            // Ghi theo lô trong cùng transaction
+            if (!deletes.isEmpty()) {
+                jdbcTemplate.batchUpdate(BULK_DELETE_SQL, deletes);
+            }
+            if (!updates.isEmpty()) {
+                jdbcTemplate.batchUpdate(BULK_UPDATE_SQL, updates);
+            }
+            if (!inserts.isEmpty()) {
+                jdbcTemplate.batchUpdate(BULK_INSERT_SQL, inserts);
+            }
+            log.info("Cập nhật giỏ hàng theo lô thành công. Xóa: {}, Cập nhật: {}, Thêm: {}",
+                deletes.size(), updates.size(), inserts.size());
+
+            return result.entrySet().stream()
+                .filter(entry -> books.containsKey(entry.getKey()))
+                .map(entry -> new CartItemDetailDTO(toCartItem(books.get(entry.getKey()), entry.getValue())))
+                .collect(Collectors.toList());
+        } catch (BadRequestException e) {
+            log.warn("Lỗi khi cập nhật giỏ hàng theo lô: {}", e.getMessage());
+            throw e;
+        } catch (Exception e) {
+            log.error("Lỗi không mong muốn khi cập nhật giỏ hàng theo lô: {}", e.getMessage());
+            throw new BadRequestException("Không thể cập nhật giỏ hàng: " + e.getMessage());
+        }
+    }
+
+    @Override
+    public void flushCart(String userId) {
+        // Dữ liệu luôn được ghi thẳng xuống cart_items, không có gì cần ghi thêm
+    }
+
+    @Override
+    public void evictCart(String userId) {
+        // Không cache giỏ hàng
+    }
 } 
\ No newline at end of file
@@ -0,0 +1,122 @@
+package com.project2.BookStore.service.impl;
+
+import com.project2.BookStore.model.Category;
+import com.project2.BookStore.repository.CategoryRepository;
+import com.project2.BookStore.service.CategoryDirectoryService;
+import com.project2.BookStore.util.TransactionUtil;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+
+/**
+ * Danh bạ danh mục trong bộ nhớ (tên -> danh mục, ID -> danh mục) dùng khi thêm/sửa/import sách.
+ * Ghi theo kiểu copy-on-write: mỗi lần thay đổi tạo bản mới rồi thay tham chiếu, nên đọc không cần khóa.
+ */
+@Slf4j
+@Service
+public class CategoryDirectoryServiceImpl implements CategoryDirectoryService {
+    @Autowired
+    private CategoryRepository categoryRepository;
+
+    private volatile Directory directory = new Directory(Map.of(), Map.of());
+
+    @Override
+    public void reload() {
+        List<Category> categories = categoryRepository.findAll();
+        Map<String, Category> byId = new HashMap<>();
+        Map<String, Category> byName = new HashMap<>();
+        for (Category category : categories) {
+            Category snapshot = snapshot(category);
+            byId.put(snapshot.getId(), snapshot);
+            byName.put(snapshot.getName(), snapshot);
+        }
+        synchronized (this) {
+            directory = new Directory(byId, byName);
+        }
+        log.info("Đã nạp danh bạ danh mục - Số danh mục: {}", byId.size());
+    }
+
+    @Override
+    public Optional<Category> findById(String id) {
+        Category category = directory.byId().get(id);
+        if (category != null) {
+            return Optional.of(snapshot(category));
+        }
+        Optional<Category> loaded = categoryRepository.findById(id);
+        loaded.ifPresent(this::put);
+        return loaded.map(this::snapshot);
+    }
+
+    @Override
+    @Transactional
+    public Category findOrCreate(String name, String description) {
+        Category category = directory.byName().get(name);
+        if (category != null) {
+            return snapshot(category);
+        }
+
+        // ON CONFLICT DO NOTHING: nếu request khác vừa tạo cùng tên thì không lỗi, chỉ đọc lại bản ghi đã có
+        int inserted = categoryRepository.insertIfAbsent(UUID.randomUUID().toString(), name, description);
+        Category created = categoryRepository.findByName(name)
+            .orElseThrow(() -> new IllegalStateException("Không thể tạo danh mục: " + name));
+        if (inserted > 0) {
+            log.info("Đã tạo danh mục mới: {}", name);
+        }
+        categorySaved(created);
+        return snapshot(created);
+    }
+
+    @Override
+    public void categorySaved(Category category) {
+        TransactionUtil.afterCommit(() -> put(category));
+    }
+
+    @Override
+    public void categoryDeleted(String categoryId) {
+        TransactionUtil.afterCommit(() -> {
+            synchronized (this) {
+                Category old = directory.byId().get(categoryId);
+                if (old == null) {
+                    return;
+                }
+                Map<String, Category> byId = new HashMap<>(directory.byId());
+                Map<String, Category> byName = new HashMap<>(directory.byName());
+                byId.remove(categoryId);
+                byName.remove(old.getName());
+                directory = new Directory(byId, byName);
+            }
+        });
+    }
+
+    private synchronized void put(Category category) {
+        Category snapshot = snapshot(category);
+        Map<String, Category> byId = new HashMap<>(directory.byId());
+        Map<String, Category> byName = new HashMap<>(directory.byName());
+        Category old = byId.put(snapshot.getId(), snapshot);
+        // Danh mục bị đổi tên thì bỏ tên cũ
+        if (old != null && !old.getName().equals(snapshot.getName())) {
+            byName.remove(old.getName());
+        }
+        byName.put(snapshot.getName(), snapshot);
+        directory = new Directory(byId, byName);
+    }
+
+    // Bản sao tách khỏi persistence context để có thể dùng chung giữa các request
+    private Category snapshot(Category category) {
+        Category copy = new Category(category.getName(), category.getDescription());
+        copy.setId(category.getId());
+        copy.setCreatedAt(category.getCreatedAt());
+        copy.setUpdatedAt(category.getUpdatedAt());
+        return copy;
+    }
+
+    private record Directory(Map<String, Category> byId, Map<String, Category> byName) {
+    }
+}
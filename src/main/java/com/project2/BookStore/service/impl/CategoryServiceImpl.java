@@ -1,10 +1,14 @@
 package com.project2.BookStore.service.impl;
 
 import com.project2.BookStore.model.Category;
+import com.project2.BookStore.repository.BookRepository;
 import com.project2.BookStore.repository.CategoryRepository;
+import com.project2.BookStore.service.CategoryDirectoryService;
 import com.project2.BookStore.service.CategoryService;
+import com.project2.BookStore.service.TopSellerService;
 import com.project2.BookStore.dto.*;
 import com.project2.BookStore.exception.BadRequestException;
+import com.project2.BookStore.util.CatalogVersion;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -14,7 +18,6 @@ import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import java.util.List;
 import java.util.stream.Collectors;
-import java.util.ArrayList;
 
 @Service
 public class CategoryServiceImpl implements CategoryService {
@@ -23,6 +26,21 @@ public class CategoryServiceImpl implements CategoryService {
     @Autowired
     private CategoryRepository categoryRepository;
 
+    @Autowired
+    private BookRepository bookRepository;
+
+    @Autowired
+    private CatalogVersion catalogVersion;
+
+    @Autowired
+    private CategoryDirectoryService categoryDirectoryService;
+
+    @Autowired
+    private TopSellerService topSellerService;
+
+    // Kết quả đếm sách theo danh mục gần nhất, dùng lại cho tới khi catalog thay đổi
+    private volatile CachedCategoryCounts cachedCounts;
+
     @Override
     public Page<CategoryDTO> getAllCategories(Pageable pageable) throws BadRequestException {
         try {
@@ -48,6 +66,16 @@ public class CategoryServiceImpl implements CategoryService {
         }
     }
 
+    @Override
+    public VersionStampDTO getCategoryVersion(String id) {
+        return categoryRepository.findVersionById(id);
+    }
+
+    @Override
+    public VersionStampDTO getCategoriesVersion() {
+        return categoryRepository.findAllVersion();
+    }
+
     @Override
     @Transactional
     public CategoryDTO addCategory(AddCategoryRequest request) throws BadRequestException {
@@ -58,6 +86,8 @@ public class CategoryServiceImpl implements CategoryService {
 
             Category category = new Category(request.getName(), request.getDescription());
             Category savedCategory = categoryRepository.save(category);
+            categoryDirectoryService.categorySaved(savedCategory);
+            catalogVersion.bumpAfterCommit();
             log.info("Đã thêm danh mục mới: {}", savedCategory.getName());
             return new CategoryDTO(savedCategory);
         } catch (BadRequestException e) {
@@ -85,6 +115,9 @@ public class CategoryServiceImpl implements CategoryService {
             category.setDescription(request.getDescription());
             
             Category updatedCategory = categoryRepository.save(category);
+            categoryDirectoryService.categorySaved(updatedCategory);
+            topSellerService.categorySaved(updatedCategory);
+            catalogVersion.bumpAfterCommit();
             log.info("Đã cập nhật danh mục: {}", updatedCategory.getName());
             return new CategoryDTO(updatedCategory);
         } catch (BadRequestException e) {
@@ -102,11 +135,13 @@ public class CategoryServiceImpl implements CategoryService {
             Category category = categoryRepository.findById(id)
                 .orElseThrow(() -> new BadRequestException("Không tìm thấy danh mục với ID: " + id));
 
-            if (!category.getBooks().isEmpty()) {
+            if (bookRepository.existsByCategoryId(id)) {
                 throw new BadRequestException("Không thể xóa danh mục đang có sách");
             }
 
             categoryRepository.delete(category);
+            categoryDirectoryService.categoryDeleted(id);
+            catalogVersion.bumpAfterCommit();
             log.info("Đã xóa danh mục: {}", category.getName());
         } catch (BadRequestException e) {
             throw e;
@@ -132,22 +167,22 @@ public class CategoryServiceImpl implements CategoryService {
     @Override
     public List<CategoryCountDTO> countCategories() throws BadRequestException {
         try {
-            List<Category> categories = categoryRepository.findAllOrderByNameAsc();
-            List<CategoryCountDTO> result = new ArrayList<>();
-            
-            for (Category category : categories) {
-                CategoryCountDTO dto = new CategoryCountDTO(
-                    category.getId(),
-                    category.getName(),
-                    category.getBooks().size()
-                );
-                result.add(dto);
+            // Đọc version trước khi query để kết quả cũ không bị lưu dưới version mới
+            long version = catalogVersion.current();
+            CachedCategoryCounts cached = cachedCounts;
+            if (cached != null && cached.version() == version) {
+                return cached.counts();
             }
-            
+
+            List<CategoryCountDTO> result = List.copyOf(categoryRepository.countBooksByCategory());
+            cachedCounts = new CachedCategoryCounts(version, result);
             return result;
         } catch (Exception e) {
             log.error("Lỗi khi đếm số lượng sách theo danh mục: {}", e.getMessage());
             throw new BadRequestException("Không thể đếm số lượng sách theo danh mục: " + e.getMessage());
         }
     }
-} 
\ No newline at end of file
+
+    private record CachedCategoryCounts(long version, List<CategoryCountDTO> counts) {
+    }
+}
@@ -0,0 +1,387 @@
+package com.project2.BookStore.service.impl;
+
+import com.project2.BookStore.dto.BuyNowRequestDTO;
+import com.project2.BookStore.dto.FlashSaleTicketDTO;
+import com.project2.BookStore.exception.BadRequestException;
+import com.project2.BookStore.model.Book;
+import com.project2.BookStore.model.Order;
+import com.project2.BookStore.model.OrderItem;
+import com.project2.BookStore.model.User;
+import com.project2.BookStore.repository.BookRepository;
+import com.project2.BookStore.repository.OrderRepository;
+import com.project2.BookStore.repository.UserRepository;
+import com.project2.BookStore.service.BookSearchService;
+import com.project2.BookStore.service.BookSuggestionService;
+import com.project2.BookStore.service.FlashSaleService;
+import com.project2.BookStore.service.InventoryReservationService;
+import com.project2.BookStore.service.TopSellerService;
+import com.project2.BookStore.util.CatalogVersion;
+import com.project2.BookStore.util.LruCache;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Nhận đơn flash sale: mỗi sách có số suất mua cấp sẵn trong bộ nhớ, request chỉ trừ suất và xếp hàng rồi trả vé ngay.
+ * Một thread ghi duy nhất lấy vé theo nhóm, tạo orders/order_items và trừ tồn kho trong một transaction
+ * (mỗi sách một câu UPDATE cho cả nhóm), thay vì hàng trăm transaction cùng tranh một dòng books.
+ */
+@Slf4j
+@Service
+public class FlashSaleServiceImpl implements FlashSaleService {
+    private static final String DECREMENT_STOCK_SQL =
+        "UPDATE books SET quantity = quantity - ?, sold = sold + ?, updated_at = now() WHERE id = ? AND quantity >= ?";
+
+    @Autowired
+    private BookRepository bookRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private OrderRepository orderRepository;
+
+    @Autowired
+    private InventoryReservationService inventoryReservationService;
+
+    @Autowired
+    private BookSearchService bookSearchService;
+
+    @Autowired
+    private TopSellerService topSellerService;
+
+    @Autowired
+    private BookSuggestionService bookSuggestionService;
+
+    @Autowired
+    private CatalogVersion catalogVersion;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Value("${bookstore.flash-sale.queue-capacity:10000}")
+    private int queueCapacity;
+
+    @Value("${bookstore.flash-sale.group-size:100}")
+    private int groupSize;
+
+    @Value("${bookstore.flash-sale.ticket-cache-size:100000}")
+    private int ticketCacheSize;
+
+    private final Map<String, AtomicInteger> tokens = new ConcurrentHashMap<>();
+    // Đơn đã tạo qua flash sale đang mở, để trả suất khi đơn bị hủy
+    private final Map<String, SaleOrder> saleOrders = new ConcurrentHashMap<>();
+    private BlockingQueue<Ticket> queue;
+    private LruCache<String, TicketState> tickets;
+    private Thread writer;
+    private volatile boolean running;
+
+    @PostConstruct
+    public void start() {
+        queue = new LinkedBlockingQueue<>(queueCapacity);
+        tickets = new LruCache<>(ticketCacheSize);
+        running = true;
+        writer = new Thread(this::runWriter, "flash-sale-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    // Ghi nốt các vé còn trong hàng đợi trước khi tắt ứng dụng
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        running = false;
+        writer.join(TimeUnit.SECONDS.toMillis(30));
+    }
+
+    @Override
+    public void open(String bookId, int tokenCount) {
+        log.info("Mở flash sale. BookId: {}, Số suất: {}", bookId, tokenCount);
+        if (tokenCount <= 0) {
+            throw new BadRequestException("Số suất flash sale phải lớn hơn 0");
+        }
+        Book book = bookRepository.findById(bookId)
+            .orElseThrow(() -> new BadRequestException("Không tìm thấy sách"));
+        if (tokenCount > book.getQuantity()) {
+            throw new BadRequestException(
+                String.format("Số suất flash sale vượt quá tồn kho. Còn lại: %d", book.getQuantity())
+            );
+        }
+        tokens.put(bookId, new AtomicInteger(tokenCount));
+    }
+
+    @Override
+    public int close(String bookId) {
+        AtomicInteger remaining = tokens.remove(bookId);
+        if (remaining == null) {
+            throw new BadRequestException("Sách không mở flash sale");
+        }
+        saleOrders.values().removeIf(order -> order.counter() == remaining);
+        log.info("Đóng flash sale. BookId: {}, Số suất còn lại: {}", bookId, remaining.get());
+        return remaining.get();
+    }
+
+    @Override
+    public boolean isActive(String bookId) {
+        return tokens.containsKey(bookId);
+    }
+
+    @Override
+    public FlashSaleTicketDTO submit(BuyNowRequestDTO request, String userId) {
+        String bookId = request.getBookId().trim();
+        int quantity = request.getQuantity();
+        try {
+            Order.PaymentMethod.valueOf(request.getPaymentMethod().toUpperCase());
+        } catch (IllegalArgumentException e) {
+            throw new BadRequestException("Phương thức thanh toán không hợp lệ");
+        }
+
+        AtomicInteger available = tokens.get(bookId);
+        if (available == null) {
+            throw new BadRequestException("Sách không mở flash sale");
+        }
+        if (!acquire(available, quantity)) {
+            throw new BadRequestException("Đã hết suất flash sale cho sách này");
+        }
+
+        Ticket ticket = new Ticket(UUID.randomUUID().toString(), userId, request, available, LocalDateTime.now());
+        FlashSaleTicketDTO dto = toDTO(ticket, FlashSaleTicketDTO.Status.QUEUED, null, null);
+        tickets.put(ticket.id(), new TicketState(userId, dto));
+        if (!queue.offer(ticket)) {
+            tickets.remove(ticket.id());
+            releaseTokens(bookId, available, quantity);
+            throw new BadRequestException("Hệ thống đang quá tải, vui lòng thử lại sau");
+        }
+        return dto;
+    }
+
+    @Override
+    public FlashSaleTicketDTO getTicket(String ticketId, String userId) {
+        TicketState state = tickets.get(ticketId);
+        if (state == null || !state.userId().equals(userId)) {
+            throw new BadRequestException("Không tìm thấy vé");
+        }
+        return state.ticket();
+    }
+
+    @Override
+    public void releaseOrder(String orderId) {
+        SaleOrder order = saleOrders.remove(orderId);
+        if (order != null) {
+            releaseTokens(order.bookId(), order.counter(), order.quantity());
+            log.info("Trả lại {} suất flash sale của đơn hàng bị hủy {}. BookId: {}", order.quantity(), orderId, order.bookId());
+        }
+    }
+
+    private boolean acquire(AtomicInteger available, int quantity) {
+        while (true) {
+            int current = available.get();
+            if (current < quantity) {
+                return false;
+            }
+            if (available.compareAndSet(current, current - quantity)) {
+                return true;
+            }
+        }
+    }
+
+    // Trả suất về đúng đợt flash sale đã cấp; đợt đó đã đóng (hoặc đã mở đợt mới) thì bỏ qua
+    private void releaseTokens(String bookId, AtomicInteger counter, int quantity) {
+        if (tokens.get(bookId) == counter) {
+            counter.addAndGet(quantity);
+        }
+    }
+
+    private void runWriter() {
+        while (running || !queue.isEmpty()) {
+            try {
+                Ticket first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                List<Ticket> batch = new ArrayList<>(groupSize);
+                batch.add(first);
+                queue.drainTo(batch, groupSize - 1);
+                processBatch(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (Exception e) {
+                log.error("Lỗi không mong muốn trong thread ghi flash sale: {}", e.getMessage(), e);
+            }
+        }
+    }
+
+    private void processBatch(List<Ticket> batch) {
+        Map<String, String> completed = new HashMap<>();
+        Map<String, String> failures = new HashMap<>();
+        try {
+            transactionTemplate.executeWithoutResult(status -> materialize(batch, completed, failures));
+        } catch (Exception e) {
+            log.error("Lỗi khi tạo nhóm {} đơn flash sale: {}", batch.size(), e.getMessage(), e);
+            completed.clear();
+            batch.forEach(ticket -> failures.putIfAbsent(ticket.id(), "Không thể tạo đơn hàng: " + e.getMessage()));
+        }
+
+        // Chỉ cập nhật vé sau khi transaction đã kết thúc
+        for (Ticket ticket : batch) {
+            String orderId = completed.get(ticket.id());
+            FlashSaleTicketDTO dto;
+            if (orderId != null) {
+                saleOrders.put(orderId, new SaleOrder(ticket.request().getBookId().trim(), ticket.counter(),
+                    ticket.request().getQuantity()));
+                dto = toDTO(ticket, FlashSaleTicketDTO.Status.COMPLETED, orderId, null);
+            } else {
+                releaseTokens(ticket.request().getBookId().trim(), ticket.counter(), ticket.request().getQuantity());
+                dto = toDTO(ticket, FlashSaleTicketDTO.Status.FAILED, null, failures.get(ticket.id()));
+            }
+            tickets.put(ticket.id(), new TicketState(ticket.userId(), dto));
+        }
+        log.info("Đã xử lý nhóm {} vé flash sale. Thành công: {}", batch.size(), completed.size());
+    }
+
+    private void materialize(List<Ticket> batch, Map<String, String> completed, Map<String, String> failures) {
+        Map<String, User> users = userRepository.findAllById(
+                batch.stream().map(Ticket::userId).distinct().collect(Collectors.toList()))
+            .stream()
+            .collect(Collectors.toMap(User::getId, Function.identity()));
+        Map<String, Book> books = bookRepository.findReadOnlyByIdIn(
+                batch.stream().map(ticket -> ticket.request().getBookId().trim()).collect(Collectors.toSet()))
+            .stream()
+            .collect(Collectors.toMap(Book::getId, Function.identity()));
+
+        // Kiểm tra từng vé, nhóm các vé hợp lệ theo sách (giữ thứ tự xếp hàng)
+        Map<String, List<Ticket>> byBook = new LinkedHashMap<>();
+        for (Ticket ticket : batch) {
+            User user = users.get(ticket.userId());
+            Book book = books.get(ticket.request().getBookId().trim());
+            if (user == null) {
+                failures.put(ticket.id(), "Không tìm thấy người dùng");
+            } else if (!user.getEmail().equals(ticket.request().getEmail().trim())) {
+                failures.put(ticket.id(), "Email không khớp với tài khoản");
+            } else if (book == null) {
+                failures.put(ticket.id(), "Không tìm thấy sách");
+            } else {
+                byBook.computeIfAbsent(book.getId(), id -> new ArrayList<>()).add(ticket);
+            }
+        }
+
+        // Mỗi sách một câu UPDATE cho cả nhóm; không đủ hàng cho cả nhóm thì xét từng vé theo thứ tự
+        List<String> bookIds = new ArrayList<>(byBook.keySet());
+        List<Object[]> groupArgs = bookIds.stream()
+            .map(bookId -> {
+                int total = byBook.get(bookId).stream().mapToInt(ticket -> ticket.request().getQuantity()).sum();
+                return new Object[]{total, total, bookId, total};
+            })
+            .collect(Collectors.toList());
+        int[] updated = jdbcTemplate.batchUpdate(DECREMENT_STOCK_SQL, groupArgs);
+
+        List<Ticket> accepted = new ArrayList<>();
+        Map<String, Integer> soldPerBook = new HashMap<>();
+        for (int i = 0; i < bookIds.size(); i++) {
+            String bookId = bookIds.get(i);
+            if (updated[i] > 0) {
+                accepted.addAll(byBook.get(bookId));
+                soldPerBook.put(bookId, (Integer) groupArgs.get(i)[0]);
+                continue;
+            }
+            for (Ticket ticket : byBook.get(bookId)) {
+                int quantity = ticket.request().getQuantity();
+                if (jdbcTemplate.update(DECREMENT_STOCK_SQL, quantity, quantity, bookId, quantity) > 0) {
+                    accepted.add(ticket);
+                    soldPerBook.merge(bookId, quantity, Integer::sum);
+                } else {
+                    failures.put(ticket.id(), "Số lượng sách " + books.get(bookId).getMainText() + " trong kho không đủ");
+                }
+            }
+        }
+        if (accepted.isEmpty()) {
+            return;
+        }
+
+        List<Order> orders = new ArrayList<>(accepted.size());
+        for (Ticket ticket : accepted) {
+            orders.add(buildOrder(ticket, users.get(ticket.userId()), books.get(ticket.request().getBookId().trim())));
+        }
+        orders = orderRepository.saveAll(orders);
+        for (int i = 0; i < orders.size(); i++) {
+            inventoryReservationService.hold(orders.get(i));
+            completed.put(accepted.get(i).id(), orders.get(i).getId());
+        }
+
+        // Đồng bộ index tìm kiếm, gợi ý và bảng xếp hạng bán chạy sau khi commit
+        soldPerBook.forEach((bookId, quantity) -> {
+            Book book = books.get(bookId);
+            book.setQuantity(book.getQuantity() - quantity);
+            book.setSold(book.getSold() + quantity);
+            bookSearchService.index(book);
+            topSellerService.applySoldChange(bookId, quantity);
+            bookSuggestionService.applySoldChange(bookId, quantity);
+        });
+        catalogVersion.bumpAfterCommit();
+    }
+
+    private Order buildOrder(Ticket ticket, User user, Book book) {
+        BuyNowRequestDTO request = ticket.request();
+        Order order = new Order();
+        order.setUser(user);
+        order.setFullName(request.getFullName().trim());
+        order.setPhone(request.getPhone().trim());
+        order.setAddress(request.getAddress().trim());
+        order.setEmail(request.getEmail().trim());
+        order.setStatus(Order.OrderStatus.PENDING);
+        order.setPaymentMethod(Order.PaymentMethod.valueOf(request.getPaymentMethod().toUpperCase()));
+        order.setPaymentStatus(Order.PaymentStatus.PENDING);
+
+        OrderItem orderItem = new OrderItem();
+        orderItem.setOrder(order);
+        orderItem.setBook(book);
+        orderItem.setQuantity(request.getQuantity());
+        orderItem.setPrice(book.getPrice());
+        orderItem.setSubtotal(book.getPrice() * request.getQuantity());
+
+        List<OrderItem> orderItems = new ArrayList<>();
+        orderItems.add(orderItem);
+        order.setOrderItems(orderItems);
+        order.setTotalAmount(orderItem.getSubtotal());
+        return order;
+    }
+
+    private FlashSaleTicketDTO toDTO(Ticket ticket, FlashSaleTicketDTO.Status status, String orderId, String message) {
+        return new FlashSaleTicketDTO(ticket.id(), ticket.request().getBookId().trim(), ticket.request().getQuantity(),
+            status, orderId, message, ticket.createdAt());
+    }
+
+    // counter: bộ đếm suất của đợt flash sale đã cấp suất cho vé
+    private record Ticket(String id, String userId, BuyNowRequestDTO request, AtomicInteger counter,
+                          LocalDateTime createdAt) {
+    }
+
+    private record SaleOrder(String bookId, AtomicInteger counter, int quantity) {
+    }
+
+    private record TicketState(String userId, FlashSaleTicketDTO ticket) {
+    }
+}
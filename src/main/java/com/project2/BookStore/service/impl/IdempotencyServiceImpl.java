@@ -0,0 +1,172 @@
+package com.project2.BookStore.service.impl;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.project2.BookStore.exception.BadRequestException;
+import com.project2.BookStore.exception.ConflictException;
+import com.project2.BookStore.model.IdempotencyKey;
+import com.project2.BookStore.repository.IdempotencyKeyRepository;
+import com.project2.BookStore.service.IdempotencyService;
+import com.project2.BookStore.util.LruCache;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.LocalDateTime;
+import java.util.HexFormat;
+import java.util.function.Supplier;
+
+/**
+ * Lưu kết quả request theo Idempotency-Key: LRU trong bộ nhớ cho các key vừa dùng,
+ * bảng idempotency_keys làm bản lưu bền vững (có hạn dùng, dọn định kỳ).
+ * Action và việc lưu response chạy trong cùng một transaction: đơn hàng được tạo thì response luôn được lưu cùng lúc,
+ * lỗi hoặc sự cố giữa chừng thì cả hai cùng rollback và key chỉ còn giữ chỗ tới hết hạn lease.
+ */
+@Slf4j
+@Service
+public class IdempotencyServiceImpl implements IdempotencyService {
+    private static final int MAX_KEY_LENGTH = 100;
+
+    @Autowired
+    private IdempotencyKeyRepository idempotencyKeyRepository;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Value("${bookstore.idempotency.ttl-ms:86400000}")
+    private long ttlMillis;
+
+    // Thời hạn giữ chỗ khi đang xử lý: tiến trình chết trước khi lưu response thì key được giải phóng sau khoảng này
+    @Value("${bookstore.idempotency.lease-ms:60000}")
+    private long leaseMillis;
+
+    @Value("${bookstore.idempotency.cache-size:10000}")
+    private int cacheSize;
+
+    private LruCache<String, StoredResponse> cache;
+
+    @PostConstruct
+    public void init() {
+        cache = new LruCache<>(cacheSize);
+    }
+
+    @Override
+    public <T> T execute(String scope, String idempotencyKey, Object request, Class<T> responseType, Supplier<T> action) {
+        if (idempotencyKey == null || idempotencyKey.isBlank()) {
+            return action.get();
+        }
+        if (idempotencyKey.length() > MAX_KEY_LENGTH) {
+            throw new BadRequestException("Idempotency-Key không được vượt quá " + MAX_KEY_LENGTH + " ký tự");
+        }
+        String id = scope + ":" + idempotencyKey.trim();
+        String requestHash = hash(toJson(request));
+
+        // Request lặp lại: trả response đã lưu, không ghi gì thêm
+        StoredResponse stored = findCompleted(id);
+        if (stored != null) {
+            return replay(id, stored, requestHash, responseType);
+        }
+
+        LocalDateTime leaseExpiresAt = LocalDateTime.now().plusNanos(leaseMillis * 1_000_000);
+        if (idempotencyKeyRepository.claim(id, requestHash, leaseExpiresAt) == 0) {
+            // Request khác vừa giành được key: có thể đã xong ngay trước đó
+            stored = findCompleted(id);
+            if (stored != null) {
+                return replay(id, stored, requestHash, responseType);
+            }
+            throw new ConflictException("Request với Idempotency-Key này đang được xử lý, vui lòng thử lại sau");
+        }
+
+        LocalDateTime expiresAt = LocalDateTime.now().plusNanos(ttlMillis * 1_000_000);
+        String[] body = new String[1];
+        T response;
+        try {
+            // Action (transaction của service được gộp vào đây) và response được commit cùng nhau
+            response = transactionTemplate.execute(status -> {
+                T result = action.get();
+                body[0] = toJson(result);
+                if (idempotencyKeyRepository.complete(id, body[0], expiresAt) == 0) {
+                    // Key đã bị request khác chiếm lại sau khi hết hạn giữ chỗ: hủy kết quả để không tạo trùng
+                    throw new ConflictException("Request với Idempotency-Key này đã quá hạn xử lý, vui lòng thử lại");
+                }
+                return result;
+            });
+        } catch (RuntimeException e) {
+            // Đã rollback cả action lẫn response: client có thể gửi lại với cùng key
+            idempotencyKeyRepository.releaseInProgress(id);
+            throw e;
+        }
+
+        cache.put(id, new StoredResponse(requestHash, body[0], expiresAt));
+        return response;
+    }
+
+    @Override
+    @Scheduled(fixedDelayString = "${bookstore.idempotency.cleanup-interval-ms:3600000}")
+    public void cleanupExpired() {
+        int deleted = idempotencyKeyRepository.deleteExpired(LocalDateTime.now());
+        if (deleted > 0) {
+            log.info("Đã xóa {} Idempotency-Key hết hạn", deleted);
+        }
+    }
+
+    private StoredResponse findCompleted(String id) {
+        StoredResponse stored = cache.get(id);
+        if (stored == null) {
+            stored = idempotencyKeyRepository.findById(id)
+                .filter(key -> key.getStatus() == IdempotencyKey.Status.COMPLETED)
+                .map(key -> new StoredResponse(key.getRequestHash(), key.getResponse(), key.getExpiresAt()))
+                .orElse(null);
+            if (stored != null) {
+                cache.put(id, stored);
+            }
+        }
+        if (stored != null && stored.expiresAt().isBefore(LocalDateTime.now())) {
+            cache.remove(id);
+            return null;
+        }
+        return stored;
+    }
+
+    private <T> T replay(String id, StoredResponse stored, String requestHash, Class<T> responseType) {
+        if (!stored.requestHash().equals(requestHash)) {
+            throw new BadRequestException("Idempotency-Key đã được dùng cho một request khác");
+        }
+        log.info("Trả lại response đã lưu cho Idempotency-Key: {}", id);
+        try {
+            return objectMapper.readValue(stored.body(), responseType);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Không đọc được response đã lưu: " + e.getMessage(), e);
+        }
+    }
+
+    private String toJson(Object value) {
+        try {
+            return objectMapper.writeValueAsString(value);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Không chuyển được dữ liệu sang JSON: " + e.getMessage(), e);
+        }
+    }
+
+    private static String hash(String value) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(value.getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 không được hỗ trợ", e);
+        }
+    }
+
+    private record StoredResponse(String requestHash, String body, LocalDateTime expiresAt) {
+    }
+}
@@ -0,0 +1,228 @@
+package com.project2.BookStore.service.impl;
+
+import com.project2.BookStore.model.Book;
+import com.project2.BookStore.model.InventoryReservation;
+import com.project2.BookStore.model.Order;
+import com.project2.BookStore.model.OrderItem;
+import com.project2.BookStore.repository.BookRepository;
+import com.project2.BookStore.repository.InventoryReservationRepository;
+import com.project2.BookStore.service.BookSearchService;
+import com.project2.BookStore.service.BookSuggestionService;
+import com.project2.BookStore.service.FlashSaleService;
+import com.project2.BookStore.service.InventoryReservationService;
+import com.project2.BookStore.service.TopSellerService;
+import com.project2.BookStore.util.CatalogVersion;
+import com.project2.BookStore.util.TimerWheel;
+import com.project2.BookStore.util.TransactionUtil;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Giữ tồn kho cho đơn chuyển khoản chưa thanh toán.
+ * Tồn kho đã được trừ khỏi books.quantity khi đặt hàng; bảng inventory_reservations ghi lại phần đang giữ và hạn giữ.
+ * Hạn giữ được theo dõi bằng TimerWheel trong bộ nhớ (mỗi slot một tick), mỗi tick gom các đơn đến hạn
+ * để hủy và hoàn kho theo lô.
+ */
+@Slf4j
+@Service
+public class InventoryReservationServiceImpl implements InventoryReservationService {
+    // Chỉ hủy đơn vẫn đang chờ và chưa thanh toán, đơn đã xử lý ở nơi khác thì bỏ qua
+    private static final String CANCEL_EXPIRED_SQL =
+        "WITH cancelled AS (" +
+        "  UPDATE orders SET status = 'CANCELLED', payment_status = 'FAILED', version = version + 1, updated_at = now() " +
+        "  WHERE id IN (:orderIds) AND status = 'PENDING' AND payment_status = 'PENDING' RETURNING id, version" +
+        "), recorded AS (" +
+        "  INSERT INTO order_status_transitions (id, order_id, from_status, to_status, version, created_at) " +
+        "  SELECT gen_random_uuid()::text, id, 'PENDING', 'CANCELLED', version, now() FROM cancelled" +
+        ") " +
+        "SELECT id FROM cancelled";
+    private static final String RESTORE_STOCK_SQL =
+        "UPDATE books b SET quantity = b.quantity + r.quantity, sold = b.sold - r.quantity, updated_at = now() " +
+        "FROM (SELECT book_id, SUM(quantity) AS quantity FROM inventory_reservations " +
+        "WHERE order_id IN (:orderIds) GROUP BY book_id) r " +
+        "WHERE b.id = r.book_id RETURNING b.id, r.quantity";
+    private static final String DELETE_RESERVATIONS_SQL =
+        "DELETE FROM inventory_reservations WHERE order_id IN (:orderIds)";
+
+    @Autowired
+    private InventoryReservationRepository reservationRepository;
+
+    @Autowired
+    private BookRepository bookRepository;
+
+    @Autowired
+    private BookSearchService bookSearchService;
+
+    @Autowired
+    private TopSellerService topSellerService;
+
+    @Autowired
+    private BookSuggestionService bookSuggestionService;
+
+    @Autowired
+    private CatalogVersion catalogVersion;
+
+    @Autowired
+    private NamedParameterJdbcTemplate namedParameterJdbcTemplate;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    // Lấy trễ vì FlashSaleServiceImpl cũng phụ thuộc service này (tránh vòng phụ thuộc khi khởi tạo bean)
+    @Autowired
+    private ObjectProvider<FlashSaleService> flashSaleService;
+
+    @Value("${bookstore.reservation.ttl-ms:900000}")
+    private long ttlMillis;
+
+    @Value("${bookstore.reservation.tick-ms:1000}")
+    private long tickMillis;
+
+    @Value("${bookstore.reservation.wheel-size:512}")
+    private int wheelSize;
+
+    @Value("${bookstore.reservation.batch-size:200}")
+    private int batchSize;
+
+    // orderId -> hạn giữ tồn kho
+    private TimerWheel<String> wheel;
+
+    @PostConstruct
+    public void init() {
+        wheel = new TimerWheel<>(wheelSize, tickMillis, System.currentTimeMillis());
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public void reload() {
+        Map<String, LocalDateTime> expiries = new HashMap<>();
+        for (InventoryReservation reservation : reservationRepository.findAll()) {
+            expiries.merge(reservation.getOrderId(), reservation.getExpiresAt(),
+                (a, b) -> a.isBefore(b) ? a : b);
+        }
+        wheel.clear();
+        expiries.forEach(this::schedule);
+        log.info("Đã nạp lịch giữ tồn kho. Số đơn đang giữ: {}", expiries.size());
+    }
+
+    @Override
+    public void hold(Order order) {
+        if (order.getPaymentMethod() != Order.PaymentMethod.BANKING
+                || order.getStatus() != Order.OrderStatus.PENDING) {
+            return;
+        }
+        LocalDateTime expiresAt = LocalDateTime.now().plusNanos(ttlMillis * 1_000_000);
+        Map<String, Integer> quantities = new HashMap<>();
+        for (OrderItem item : order.getOrderItems()) {
+            quantities.merge(item.getBook().getId(), item.getQuantity(), Integer::sum);
+        }
+        List<InventoryReservation> reservations = quantities.entrySet().stream()
+            .map(entry -> {
+                InventoryReservation reservation = new InventoryReservation();
+                reservation.setOrderId(order.getId());
+                reservation.setBookId(entry.getKey());
+                reservation.setQuantity(entry.getValue());
+                reservation.setExpiresAt(expiresAt);
+                return reservation;
+            })
+            .collect(Collectors.toList());
+        reservationRepository.saveAll(reservations);
+        log.info("Giữ tồn kho cho đơn hàng {} đến {}", order.getId(), expiresAt);
+
+        String orderId = order.getId();
+        TransactionUtil.afterCommit(() -> schedule(orderId, expiresAt));
+    }
+
+    @Override
+    public void release(String orderId) {
+        int deleted = reservationRepository.deleteByOrderId(orderId);
+        if (deleted > 0) {
+            log.info("Bỏ giữ tồn kho cho đơn hàng {}", orderId);
+        }
+        TransactionUtil.afterCommit(() -> wheel.unschedule(orderId));
+    }
+
+    @Override
+    public void releaseAll(Collection<String> orderIds) {
+        if (orderIds.isEmpty()) {
+            return;
+        }
+        int deleted = reservationRepository.deleteByOrderIdIn(orderIds);
+        if (deleted > 0) {
+            log.info("Bỏ giữ tồn kho cho {} đơn hàng", deleted);
+        }
+        List<String> released = new ArrayList<>(orderIds);
+        TransactionUtil.afterCommit(() -> released.forEach(wheel::unschedule));
+    }
+
+    @Override
+    @Scheduled(fixedDelayString = "${bookstore.reservation.tick-ms:1000}")
+    public void expireDue() {
+        List<String> due = wheel.advance(System.currentTimeMillis());
+        for (int from = 0; from < due.size(); from += batchSize) {
+            List<String> batch = due.subList(from, Math.min(due.size(), from + batchSize));
+            try {
+                transactionTemplate.executeWithoutResult(status -> expireBatch(batch));
+            } catch (Exception e) {
+                log.error("Lỗi khi hủy đơn hàng hết hạn giữ tồn kho, sẽ thử lại: {}", e.getMessage());
+                batch.forEach(orderId -> schedule(orderId, LocalDateTime.now()));
+            }
+        }
+    }
+
+    private void expireBatch(List<String> orderIds) {
+        MapSqlParameterSource params = new MapSqlParameterSource("orderIds", orderIds);
+        List<String> cancelled = namedParameterJdbcTemplate.queryForList(CANCEL_EXPIRED_SQL, params, String.class);
+
+        Map<String, Integer> restored = new HashMap<>();
+        if (!cancelled.isEmpty()) {
+            namedParameterJdbcTemplate.query(RESTORE_STOCK_SQL, new MapSqlParameterSource("orderIds", cancelled),
+                rs -> {
+                    restored.put(rs.getString(1), rs.getInt(2));
+                });
+        }
+        namedParameterJdbcTemplate.update(DELETE_RESERVATIONS_SQL, params);
+        if (!cancelled.isEmpty()) {
+            TransactionUtil.afterCommit(() -> cancelled.forEach(flashSaleService.getObject()::releaseOrder));
+        }
+
+        if (!restored.isEmpty()) {
+            Map<String, Book> books = bookRepository.findAllWithCategoryByIdIn(restored.keySet()).stream()
+                .collect(Collectors.toMap(Book::getId, Function.identity()));
+            restored.forEach((bookId, quantity) -> {
+                Book book = books.get(bookId);
+                if (book != null) {
+                    bookSearchService.index(book);
+                }
+                topSellerService.applySoldChange(bookId, -quantity);
+                bookSuggestionService.applySoldChange(bookId, -quantity);
+            });
+            catalogVersion.bumpAfterCommit();
+        }
+        log.info("Hết hạn giữ tồn kho: {} đơn đến hạn, {} đơn bị hủy, hoàn kho {} đầu sách",
+            orderIds.size(), cancelled.size(), restored.size());
+    }
+
+    private void schedule(String orderId, LocalDateTime expiresAt) {
+        wheel.schedule(orderId, expiresAt.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli());
+    }
+}
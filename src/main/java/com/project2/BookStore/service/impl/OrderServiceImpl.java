@@ -7,7 +7,10 @@ import com.project2.BookStore.dto.OrderRequestDTO;
 import com.project2.BookStore.dto.OrderResponseDTO;
 import com.project2.BookStore.dto.OrderWithDetailsDTO;
 import com.project2.BookStore.dto.BuyNowRequestDTO;
+import com.project2.BookStore.dto.CursorPageResponse;
+import com.project2.BookStore.dto.OrderBulkStatusResponseDTO;
 import com.project2.BookStore.exception.BadRequestException;
+import com.project2.BookStore.exception.ConflictException;
 import com.project2.BookStore.exception.OrderException;
 import com.project2.BookStore.exception.ResourceNotFoundException;
 import com.project2.BookStore.model.Book;
@@ -21,51 +24,137 @@ import com.project2.BookStore.repository.OrderItemRepository;
 import com.project2.BookStore.repository.OrderRepository;
 import com.project2.BookStore.repository.UserRepository;
 import com.project2.BookStore.service.CartService;
+import com.project2.BookStore.service.BookSearchService;
+import com.project2.BookStore.service.TopSellerService;
+import com.project2.BookStore.service.BookSuggestionService;
+import com.project2.BookStore.service.InventoryReservationService;
+import com.project2.BookStore.service.FlashSaleService;
+import com.project2.BookStore.service.OrderStateMachine;
+import com.project2.BookStore.util.CatalogVersion;
+import com.project2.BookStore.util.CursorUtil;
+import com.project2.BookStore.util.TransactionUtil;
 import com.project2.BookStore.service.OrderService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.transaction.annotation.Propagation;
+import jakarta.persistence.criteria.CriteriaBuilder;
 import jakarta.persistence.criteria.Predicate;
+import jakarta.persistence.criteria.Root;
 import org.springframework.data.jpa.domain.Specification;
 import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
 
 import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
 import java.util.stream.Collectors;
 import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.Function;
+import java.util.regex.Pattern;
 
 @Slf4j
 @Service
 @RequiredArgsConstructor
 public class OrderServiceImpl implements OrderService {
+    // Chỉ trừ khi còn đủ hàng, tránh bán vượt tồn kho khi nhiều người mua cùng lúc
+    private static final String DECREMENT_STOCK_SQL =
+        "UPDATE books SET quantity = quantity - ?, sold = sold + ?, updated_at = now() WHERE id = ? AND quantity >= ?";
+    // Hoàn kho bằng phép cộng trên chính dòng dữ liệu, không ghi đè lượt trừ tồn kho của đơn khác đang chạy song song
+    private static final String RESTORE_STOCK_SQL =
+        "UPDATE books SET quantity = quantity + ?, sold = sold - ?, updated_at = now() WHERE id = ?";
+    // Từ khóa tìm kiếm có dạng mã đơn / email / số điện thoại đầy đủ thì so khớp chính xác thay vì LIKE
+    private static final Pattern ORDER_ID_PATTERN =
+        Pattern.compile("^[0-9a-fA-F]{8}-[0-9a-fA-F]{4}-[0-9a-fA-F]{4}-[0-9a-fA-F]{4}-[0-9a-fA-F]{12}$");
+    private static final Pattern EMAIL_PATTERN = Pattern.compile("^[^@\\s]+@[^@\\s]+\\.[^@\\s]+$");
+    // Cùng định dạng với số điện thoại được lưu (xem BuyNowRequestDTO.phone)
+    private static final Pattern PHONE_PATTERN = Pattern.compile("^\\d{10,11}$");
     private final OrderRepository orderRepository;
     private final BookRepository bookRepository;
     private final UserRepository userRepository;
     private final OrderItemRepository orderItemRepository;
     private final CartItemRepository cartItemRepository;
+    private final BookSearchService bookSearchService;
+    private final TopSellerService topSellerService;
+    private final BookSuggestionService bookSuggestionService;
+    private final CatalogVersion catalogVersion;
+    private final JdbcTemplate jdbcTemplate;
+    private final NamedParameterJdbcTemplate namedParameterJdbcTemplate;
+    private final InventoryReservationService inventoryReservationService;
+    private final FlashSaleService flashSaleService;
+    private final OrderStateMachine orderStateMachine;
     @Autowired
     private CartService cartService;
 
+    // Đồng bộ index tìm kiếm, gợi ý và bảng xếp hạng bán chạy sau khi đơn hàng làm thay đổi tồn kho/số lượng bán
+    private void afterStockChanged(Book book, int soldDelta) {
+        bookSearchService.index(book);
+        topSellerService.applySoldChange(book.getId(), soldDelta);
+        bookSuggestionService.applySoldChange(book.getId(), soldDelta);
+        catalogVersion.bumpAfterCommit();
+    }
+
+    // Trừ tồn kho bằng một lô câu UPDATE có điều kiện, câu nào không tác động dòng nào (hết hàng do
+    // người khác vừa mua) thì báo lỗi để rollback cả đơn. Cập nhật theo thứ tự ID sách để tránh deadlock
+    private void decrementStock(Map<String, Integer> quantities, Map<String, Book> books) {
+        List<Map.Entry<String, Integer>> entries = new ArrayList<>(new TreeMap<>(quantities).entrySet());
+        int[] updated = jdbcTemplate.batchUpdate(DECREMENT_STOCK_SQL, entries.stream()
+            .map(entry -> new Object[]{entry.getValue(), entry.getValue(), entry.getKey(), entry.getValue()})
+            .collect(Collectors.toList()));
+        for (int i = 0; i < updated.length; i++) {
+            if (updated[i] == 0) {
+                Book book = books.get(entries.get(i).getKey());
+                throw new BadRequestException("Số lượng sách " + book.getMainText() + " trong kho không đủ");
+            }
+        }
+
+        // Đồng bộ entity (chỉ đọc) trong bộ nhớ với giá trị vừa ghi để cập nhật index
+        for (Map.Entry<String, Integer> entry : entries) {
+            Book book = books.get(entry.getKey());
+            book.setQuantity(book.getQuantity() - entry.getValue());
+            book.setSold(book.getSold() + entry.getValue());
+            afterStockChanged(book, entry.getValue());
+        }
+    }
+
+    // Hoàn kho bằng một lô câu UPDATE cộng dồn, cùng thứ tự ID sách với decrementStock để tránh deadlock.
+    // Sách được đọc lại (chỉ đọc) sau khi cập nhật để đồng bộ index
+    private void restoreStock(Map<String, Integer> quantities) {
+        if (quantities.isEmpty()) {
+            return;
+        }
+        List<Map.Entry<String, Integer>> entries = new ArrayList<>(new TreeMap<>(quantities).entrySet());
+        jdbcTemplate.batchUpdate(RESTORE_STOCK_SQL, entries.stream()
+            .map(entry -> new Object[]{entry.getValue(), entry.getValue(), entry.getKey()})
+            .collect(Collectors.toList()));
+
+        for (Book book : bookRepository.findReadOnlyByIdIn(quantities.keySet())) {
+            int quantity = quantities.get(book.getId());
+            afterStockChanged(book, -quantity);
+            log.info("Đã hoàn trả số lượng sách. BookId: {}, Số lượng: {}", book.getId(), quantity);
+        }
+    }
+
     @Transactional(propagation = Propagation.REQUIRES_NEW)
-    protected void updateCartItems(String userId, List<OrderItem> orderItems) {
+    protected void updateCartItems(String userId, List<OrderItem> orderItems, Map<String, CartItem> cartItemMap) {
         log.info("Bắt đầu cập nhật giỏ hàng sau khi tạo đơn hàng. UserId: {}", userId);
         try {
-            // Get all cart items for this user
-            List<CartItem> userCartItems = cartItemRepository.findByUser_Id(userId);
-            log.info("Tìm thấy {} sản phẩm trong giỏ hàng của user {}", userCartItems.size(), userId);
-
-            // Create a map of book IDs to cart items for quick lookup
-            Map<String, CartItem> cartItemMap = userCartItems.stream()
-                .collect(Collectors.toMap(item -> item.getBook().getId(), item -> item));
 
             // Process each order item
             for (OrderItem orderItem : orderItems) {
@@ -155,10 +244,11 @@ public class OrderServiceImpl implements OrderService {
             
             order.setPaymentStatus(Order.PaymentStatus.PENDING);
 
-            // Process order items
-            List<OrderItem> orderItems = new ArrayList<>();
-            double totalAmount = 0;
+            // Giỏ hàng có thể đang nằm trong bộ nhớ (chế độ ghi trễ), ghi xuống cart_items trước khi đọc
+            cartService.flushCart(userId);
 
+            // Gộp số lượng theo sách (cùng một sách có thể xuất hiện nhiều dòng)
+            Map<String, Integer> quantities = new LinkedHashMap<>();
             for (OrderRequestDTO.OrderItemRequestDTO itemRequest : request.getItems()) {
                 if (itemRequest.getBookId() == null || itemRequest.getBookId().trim().isEmpty()) {
                     throw new BadRequestException("ID sách không được trống");
@@ -178,16 +268,37 @@ public class OrderServiceImpl implements OrderService {
                     throw new BadRequestException("Số lượng sách không hợp lệ");
                 }
 
-                String bookId = itemRequest.getBookId().trim();
-                Book book = bookRepository.findById(bookId)
-                    .orElseThrow(() -> new BadRequestException("Không tìm thấy sách với ID: " + bookId));
+                quantities.merge(itemRequest.getBookId().trim(), quantity, Integer::sum);
+            }
+
+            // Toàn bộ sách và giỏ hàng, mỗi loại một câu query
+            Map<String, Book> books = bookRepository.findReadOnlyByIdIn(quantities.keySet()).stream()
+                .collect(Collectors.toMap(Book::getId, Function.identity()));
+            Map<String, CartItem> cartItemMap = cartItemRepository.findByUser_Id(userId).stream()
+                .collect(Collectors.toMap(CartItem::getBookId, Function.identity(), (a, b) -> a));
+
+            // Process order items
+            List<OrderItem> orderItems = new ArrayList<>();
+            double totalAmount = 0;
+
+            for (Map.Entry<String, Integer> entry : quantities.entrySet()) {
+                String bookId = entry.getKey();
+                int quantity = entry.getValue();
+                Book book = books.get(bookId);
+                if (book == null) {
+                    throw new BadRequestException("Không tìm thấy sách với ID: " + bookId);
+                }
+
+                if (flashSaleService.isActive(bookId)) {
+                    throw new BadRequestException("Sách " + book.getMainText() + " đang mở bán flash sale, vui lòng đặt qua flash sale");
+                }
 
                 if (book.getQuantity() < quantity) {
                     throw new BadRequestException("Số lượng sách " + book.getMainText() + " trong kho không đủ");
                 }
 
                 // Kiểm tra xem sách có trong giỏ hàng không (không bắt buộc)
-                CartItem cartItem = cartItemRepository.findByUser_IdAndBook_Id(userId, bookId).orElse(null);
+                CartItem cartItem = cartItemMap.get(bookId);
                 if (cartItem != null) {
                     // Nếu có trong giỏ hàng, kiểm tra số lượng
                     if (cartItem.getQuantity() < quantity) {
@@ -202,25 +313,25 @@ public class OrderServiceImpl implements OrderService {
                 orderItem.setPrice(book.getPrice());
                 orderItem.setSubtotal(book.getPrice() * quantity);
 
-                // Update book quantity
-                book.setQuantity(book.getQuantity() - quantity);
-                book.setSold(book.getSold() + quantity);
-                bookRepository.save(book);
-
                 orderItems.add(orderItem);
                 totalAmount += orderItem.getSubtotal();
             }
 
+            // Trừ tồn kho nguyên tử, không đọc-sửa-ghi entity
+            decrementStock(quantities, books);
+
             order.setTotalAmount(totalAmount);
             order.setOrderItems(orderItems);
             
             // Save order
             order = orderRepository.save(order);
+            inventoryReservationService.hold(order);
             log.info("Đơn hàng được tạo thành công. OrderId: {}", order.getId());
 
             // Update cart items in a separate transaction
             try {
-                updateCartItems(userId, orderItems);
+                updateCartItems(userId, orderItems, cartItemMap);
+                TransactionUtil.afterCommit(() -> cartService.evictCart(userId));
             } catch (Exception e) {
                 log.error("Lỗi khi cập nhật giỏ hàng, nhưng đơn hàng đã được tạo thành công: {}", e.getMessage());
                 // Don't throw the error since the order was created successfully
@@ -283,9 +394,13 @@ public class OrderServiceImpl implements OrderService {
             }
 
             String bookId = request.getBookId().trim();
-            Book book = bookRepository.findById(bookId)
+            Book book = bookRepository.findReadOnlyByIdIn(List.of(bookId)).stream().findFirst()
                 .orElseThrow(() -> new BadRequestException("Không tìm thấy sách với ID: " + bookId));
 
+            if (flashSaleService.isActive(bookId)) {
+                throw new BadRequestException("Sách " + book.getMainText() + " đang mở bán flash sale, vui lòng đặt qua flash sale");
+            }
+
             if (book.getQuantity() < request.getQuantity()) {
                 throw new BadRequestException("Số lượng sách " + book.getMainText() + " trong kho không đủ");
             }
@@ -315,10 +430,8 @@ public class OrderServiceImpl implements OrderService {
             orderItem.setPrice(book.getPrice());
             orderItem.setSubtotal(book.getPrice() * request.getQuantity());
 
-            // Update book quantity
-            book.setQuantity(book.getQuantity() - request.getQuantity());
-            book.setSold(book.getSold() + request.getQuantity());
-            bookRepository.save(book);
+            // Trừ tồn kho nguyên tử như khi tạo đơn hàng
+            decrementStock(Map.of(bookId, request.getQuantity()), Map.of(bookId, book));
 
             List<OrderItem> orderItems = new ArrayList<>();
             orderItems.add(orderItem);
@@ -329,6 +442,7 @@ public class OrderServiceImpl implements OrderService {
             
             // Save order
             order = orderRepository.save(order);
+            inventoryReservationService.hold(order);
             log.info("Đơn hàng mua ngay được tạo thành công. OrderId: {}", order.getId());
             
             return convertToOrderResponseDTO(order);
@@ -364,6 +478,7 @@ public class OrderServiceImpl implements OrderService {
         log.info("Lấy danh sách tất cả đơn hàng");
         try {
         Page<Order> orderPage = orderRepository.findAll(pageable);
+            fetchOrderDetails(orderPage.getContent());
             return orderPage.map(this::convertToOrderResponseDTO);
         } catch (Exception e) {
             log.error("Lỗi khi lấy danh sách đơn hàng: {}", e.getMessage(), e);
@@ -374,60 +489,116 @@ public class OrderServiceImpl implements OrderService {
     @Override
     @Transactional
     public OrderResponseDTO updateOrderStatus(String orderId, Order.OrderStatus status) {
-        Order order = orderRepository.findById(orderId)
+        return updateOrderStatus(orderId, status, null);
+    }
+
+    @Override
+    @Transactional
+    public OrderResponseDTO updateOrderStatus(String orderId, Order.OrderStatus status, Long expectedVersion) {
+        // Hủy đơn cần hoàn kho nên đi qua luồng hủy
+        if (status == Order.OrderStatus.CANCELLED) {
+            return cancel(orderId, expectedVersion);
+        }
+
+        // Kiểm tra bước chuyển hợp lệ, version và cập nhật trong một câu lệnh (không đọc đơn trước)
+        orderStateMachine.transition(orderId, status, expectedVersion);
+        // Đơn đã được xử lý tiếp thì không còn tự hủy khi hết hạn giữ tồn kho
+        inventoryReservationService.release(orderId);
+
+        Order updatedOrder = orderRepository.findById(orderId)
             .orElseThrow(() -> new ResourceNotFoundException("Không tìm thấy đơn hàng với ID: " + orderId));
+        return convertToOrderResponseDTO(updatedOrder);
+    }
 
-        if (order.getStatus() == Order.OrderStatus.CANCELLED) {
-            throw new BadRequestException("Không thể cập nhật đơn hàng đã hủy");
+    @Override
+    @Transactional
+    public OrderBulkStatusResponseDTO bulkUpdateOrderStatus(List<String> orderIds, Order.OrderStatus status) {
+        // Hủy đơn cần hoàn kho từng đơn nên không hỗ trợ hàng loạt
+        if (status == Order.OrderStatus.CANCELLED) {
+            throw new BadRequestException("Không hỗ trợ hủy đơn hàng loạt, vui lòng hủy từng đơn");
+        }
+        List<String> ids = orderIds.stream()
+            .filter(Objects::nonNull)
+            .map(String::trim)
+            .filter(id -> !id.isEmpty())
+            .distinct()
+            .collect(Collectors.toList());
+        if (ids.isEmpty()) {
+            throw new BadRequestException("Danh sách ID đơn hàng không được để trống");
+        }
+        log.info("Bắt đầu chuyển {} đơn hàng sang {}", ids.size(), status);
+
+        // Một câu lệnh cho cả lô, cùng điều kiện và lịch sử chuyển trạng thái như khi chuyển từng đơn
+        Set<String> updated = orderStateMachine.transitionAll(ids, status);
+
+        // Đọc trạng thái hiện tại của các đơn không chuyển được để báo lý do
+        Map<String, Order.OrderStatus> currentStatuses = new HashMap<>();
+        Set<String> paidIds = new HashSet<>();
+        List<String> failedIds = ids.stream().filter(id -> !updated.contains(id)).collect(Collectors.toList());
+        if (!failedIds.isEmpty()) {
+            namedParameterJdbcTemplate.query(
+                "SELECT id, status, payment_status FROM orders WHERE id IN (:ids)",
+                new MapSqlParameterSource("ids", failedIds),
+                rs -> {
+                    currentStatuses.put(rs.getString("id"), Order.OrderStatus.valueOf(rs.getString("status")));
+                    if (Order.PaymentStatus.PAID.name().equals(rs.getString("payment_status"))) {
+                        paidIds.add(rs.getString("id"));
+                    }
+                }
+            );
         }
 
-        order.setStatus(status);
-        order.setUpdatedAt(LocalDateTime.now());
-        if (status == Order.OrderStatus.DELIVERED) {
-            order.setPaymentStatus(Order.PaymentStatus.PAID);
+        List<OrderBulkStatusResponseDTO.Result> results = new ArrayList<>(ids.size());
+        for (String id : ids) {
+            if (updated.contains(id)) {
+                results.add(new OrderBulkStatusResponseDTO.Result(id, true, status, null));
+            } else if (currentStatuses.containsKey(id)) {
+                Order.OrderStatus current = currentStatuses.get(id);
+                String message = status == Order.OrderStatus.REFUNDED && current.canTransitionTo(status) && !paidIds.contains(id)
+                    ? "Chỉ có thể hoàn tiền cho đơn hàng đã thanh toán"
+                    : String.format("Không thể chuyển đơn hàng từ trạng thái %s sang %s", current, status);
+                results.add(new OrderBulkStatusResponseDTO.Result(id, false, current, message));
+            } else {
+                results.add(new OrderBulkStatusResponseDTO.Result(id, false, null, "Không tìm thấy đơn hàng"));
+            }
         }
 
-        Order updatedOrder = orderRepository.save(order);
-        return convertToOrderResponseDTO(updatedOrder);
+        // Đơn đã được xử lý tiếp thì không còn tự hủy khi hết hạn giữ tồn kho
+        inventoryReservationService.releaseAll(updated);
+
+        log.info("Chuyển trạng thái hàng loạt sang {}: thành công {}, thất bại {}", status, updated.size(), failedIds.size());
+        return new OrderBulkStatusResponseDTO(status, updated.size(), failedIds.size(), results);
     }
 
     @Override
     @Transactional
     public OrderResponseDTO cancelOrder(String orderId) {
+        return cancel(orderId, null);
+    }
+
+    private OrderResponseDTO cancel(String orderId, Long expectedVersion) {
         log.info("Bắt đầu hủy đơn hàng: {}", orderId);
         try {
+            // Chuyển sang CANCELLED có điều kiện trước: hai người cùng hủy thì chỉ một người hoàn kho
+            orderStateMachine.transition(orderId, Order.OrderStatus.CANCELLED, expectedVersion);
+            inventoryReservationService.release(orderId);
+            TransactionUtil.afterCommit(() -> flashSaleService.releaseOrder(orderId));
+
             Order order = orderRepository.findById(orderId)
                 .orElseThrow(() -> new BadRequestException("Không tìm thấy đơn hàng"));
 
-            // Kiểm tra trạng thái đơn hàng
-            if (order.getStatus() == Order.OrderStatus.CANCELLED) {
-                throw new BadRequestException("Đơn hàng đã được hủy trước đó");
-            }
-            if (order.getStatus() == Order.OrderStatus.DELIVERED) {
-                throw new BadRequestException("Không thể hủy đơn hàng đã giao thành công");
-            }
-
-            // Cập nhật trạng thái đơn hàng
-            order.setStatus(Order.OrderStatus.CANCELLED);
-            order.setPaymentStatus(Order.PaymentStatus.FAILED);
-            order.setUpdatedAt(LocalDateTime.now());
-            order = orderRepository.save(order);
-
-            // Hoàn trả số lượng sách vào kho
+            // Hoàn trả số lượng sách vào kho (gộp các dòng cùng sách)
+            Map<String, Integer> quantities = new HashMap<>();
             for (OrderItem item : order.getOrderItems()) {
-                Book book = item.getBook();
-                if (book != null) {
-                    book.setQuantity(book.getQuantity() + item.getQuantity());
-                    book.setSold(book.getSold() - item.getQuantity());
-                    bookRepository.save(book);
-                    log.info("Đã hoàn trả số lượng sách. BookId: {}, Số lượng: {}", 
-                        book.getId(), item.getQuantity());
+                if (item.getBook() != null) {
+                    quantities.merge(item.getBook().getId(), item.getQuantity(), Integer::sum);
                 }
             }
+            restoreStock(quantities);
 
             log.info("Đơn hàng {} đã được hủy thành công", orderId);
             return convertToOrderResponseDTO(order);
-        } catch (BadRequestException e) {
+        } catch (BadRequestException | ConflictException e) {
             log.warn("Lỗi khi hủy đơn hàng {}: {}", orderId, e.getMessage());
             throw e;
         } catch (Exception e) {
@@ -437,10 +608,12 @@ public class OrderServiceImpl implements OrderService {
     }
 
     @Override
+    @Transactional(readOnly = true)
     public Page<OrderResponseDTO> getAllOrdersForAdmin(Pageable pageable, Order.OrderStatus status, String search) {
         log.info("Bắt đầu tìm kiếm đơn hàng. Status: {}, Search: {}", status, search);
         try {
-            Page<Order> orderPage = orderRepository.findByStatusAndSearch(status, search, pageable);
+            Page<Order> orderPage = orderRepository.findAll(adminSearchSpec(status, search), pageable);
+            fetchOrderDetails(orderPage.getContent());
             List<OrderResponseDTO> orderDTOs = orderPage.getContent().stream()
                 .map(order -> convertToOrderResponseDTO(order))
                 .collect(Collectors.toList());
@@ -453,12 +626,124 @@ public class OrderServiceImpl implements OrderService {
         }
     }
 
+    @Override
+    @Transactional(readOnly = true)
+    public CursorPageResponse<OrderResponseDTO> getAllOrdersForAdminByCursor(
+            Order.OrderStatus status, String search, String cursor, int size, boolean includeTotal) {
+        log.info("Tìm kiếm đơn hàng theo cursor. Status: {}, Search: {}, Size: {}", status, search, size);
+        try {
+            Specification<Order> filter = adminSearchSpec(status, search);
+            Specification<Order> spec = filter;
+            if (cursor != null && !cursor.isBlank()) {
+                String[] parts = CursorUtil.decode(cursor, 2);
+                LocalDateTime lastCreatedAt = parseCursorCreatedAt(parts[0]);
+                String lastId = parts[1];
+                // Seek theo (created_at, id) giảm dần, dùng idx_orders_created_at_id / idx_orders_status_created_at_id
+                spec = filter.and((root, query, cb) -> cb.or(
+                    cb.lessThan(root.<LocalDateTime>get("createdAt"), lastCreatedAt),
+                    cb.and(
+                        cb.equal(root.get("createdAt"), lastCreatedAt),
+                        cb.lessThan(root.<String>get("id"), lastId)
+                    )
+                ));
+            }
+            Sort sort = Sort.by(Sort.Direction.DESC, "createdAt").and(Sort.by(Sort.Direction.DESC, "id"));
+
+            // Lấy dư 1 bản ghi để biết còn trang sau hay không, không cần COUNT
+            List<Order> orders = orderRepository.findBy(spec, q -> q.sortBy(sort).limit(size + 1).all());
+            boolean hasNext = orders.size() > size;
+            if (hasNext) {
+                orders = orders.subList(0, size);
+            }
+
+            String nextCursor = null;
+            if (hasNext) {
+                Order last = orders.get(orders.size() - 1);
+                nextCursor = CursorUtil.encode(last.getCreatedAt().toString(), last.getId());
+            }
+
+            fetchOrderDetails(orders);
+            List<OrderResponseDTO> orderDTOs = orders.stream()
+                .map(this::convertToOrderResponseDTO)
+                .collect(Collectors.toList());
+            Long total = includeTotal ? orderRepository.count(filter) : null;
+
+            log.info("Tìm kiếm đơn hàng theo cursor thành công. Số đơn: {}, Còn trang sau: {}", orderDTOs.size(), hasNext);
+            return new CursorPageResponse<>(orderDTOs, size, nextCursor, hasNext, total);
+        } catch (BadRequestException e) {
+            throw e;
+        } catch (Exception e) {
+            log.error("Lỗi khi tìm kiếm đơn hàng theo cursor: {}", e.getMessage(), e);
+            throw new BadRequestException("Không thể tìm kiếm đơn hàng: " + e.getMessage());
+        }
+    }
+
+    // Điều kiện lọc đơn hàng ở trang quản trị
+    private Specification<Order> adminSearchSpec(Order.OrderStatus status, String search) {
+        String keyword = search == null ? "" : search.trim();
+        return (root, query, cb) -> {
+            List<Predicate> predicates = new ArrayList<>();
+            if (status != null) {
+                predicates.add(cb.equal(root.get("status"), status));
+            }
+            if (!keyword.isEmpty()) {
+                predicates.add(searchPredicate(root, cb, keyword));
+            }
+            return cb.and(predicates.toArray(new Predicate[0]));
+        };
+    }
+
+    private Predicate searchPredicate(Root<Order> root, CriteriaBuilder cb, String keyword) {
+        // Mã đơn, email, số điện thoại đầy đủ: so khớp chính xác, đi thẳng vào index B-tree
+        if (ORDER_ID_PATTERN.matcher(keyword).matches()) {
+            return cb.equal(root.get("id"), keyword.toLowerCase());
+        }
+        if (EMAIL_PATTERN.matcher(keyword).matches()) {
+            return cb.equal(cb.lower(root.get("email")), keyword.toLowerCase());
+        }
+        String phone = normalizePhone(keyword);
+        if (PHONE_PATTERN.matcher(phone).matches()) {
+            return cb.equal(root.get("phone"), phone);
+        }
+
+        // Còn lại: tìm gần đúng bằng LOWER(cột) LIKE, khớp với các index trigram trong database/order_search_indexes.sql
+        String pattern = "%" + escapeLike(keyword.toLowerCase()) + "%";
+        return cb.or(
+            cb.like(cb.lower(root.get("fullName")), pattern, '\\'),
+            cb.like(cb.lower(root.get("email")), pattern, '\\'),
+            cb.like(cb.lower(root.get("phone")), pattern, '\\'),
+            cb.like(cb.lower(root.get("address")), pattern, '\\')
+        );
+    }
+
+    // Bỏ khoảng trắng/dấu chấm/gạch nối, đổi đầu số +84 thành 0 như số điện thoại được lưu
+    private String normalizePhone(String value) {
+        String phone = value.replaceAll("[\\s.()-]", "");
+        if (phone.startsWith("+84")) {
+            phone = "0" + phone.substring(3);
+        }
+        return phone;
+    }
+
+    private String escapeLike(String value) {
+        return value.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_");
+    }
+
+    private LocalDateTime parseCursorCreatedAt(String value) {
+        try {
+            return LocalDateTime.parse(value);
+        } catch (Exception e) {
+            throw new BadRequestException("Cursor không hợp lệ");
+        }
+    }
+
     @Override
     @Transactional(readOnly = true)
     public Page<OrderResponseDTO> getOrdersByUser(String userId, Pageable pageable) {
         log.info("Lấy danh sách đơn hàng của user: {}", userId);
         try {
         Page<Order> orderPage = orderRepository.findByUserId(userId, pageable);
+            fetchOrderDetails(orderPage.getContent());
             return orderPage.map(this::convertToOrderResponseDTO);
         } catch (Exception e) {
             log.error("Lỗi khi lấy danh sách đơn hàng của user {}: {}", userId, e.getMessage(), e);
@@ -485,6 +770,7 @@ public class OrderServiceImpl implements OrderService {
                 log.warn("Không tìm thấy đơn hàng nào cho user: {}", userId);
                 return Page.empty(pageable);
             }
+            fetchOrderDetails(ordersPage.getContent());
 
             List<OrderResponseDTO> orderDTOs = ordersPage.getContent().stream()
                 .map(order -> {
@@ -509,9 +795,11 @@ public class OrderServiceImpl implements OrderService {
     }
 
     @Override
+    @Transactional(readOnly = true)
     public Page<OrderWithDetailsDTO> getOrdersPaged(Pageable pageable) {
         try {
             Page<Order> orderPage = orderRepository.findAll(pageable);
+            fetchOrderDetails(orderPage.getContent());
             List<OrderWithDetailsDTO> orderDTOs = orderPage.getContent().stream()
                 .map(order -> {
                     List<OrderItemWithBookDTO> orderItemDTOs = order.getOrderItems().stream()
@@ -590,6 +878,7 @@ public class OrderServiceImpl implements OrderService {
 
         // Xóa đơn hàng
         orderRepository.delete(order);
+        inventoryReservationService.release(orderId);
 
         return deletedOrder;
     }
@@ -612,6 +901,15 @@ public class OrderServiceImpl implements OrderService {
         }
     }
 
+    // Nạp user, chi tiết đơn và sách cho cả trang bằng một câu IN thay vì lazy-load từng đơn (N+1).
+    // Phải gọi trong transaction để các đơn của trang được khởi tạo ngay trong persistence context
+    private void fetchOrderDetails(List<Order> orders) {
+        if (orders.isEmpty()) {
+            return;
+        }
+        orderRepository.findWithDetailsByIdIn(orders.stream().map(Order::getId).collect(Collectors.toList()));
+    }
+
     private OrderResponseDTO convertToOrderResponseDTO(Order order) {
         try {
             if (order == null) {
@@ -631,6 +929,7 @@ public class OrderServiceImpl implements OrderService {
             dto.setPaymentStatus(order.getPaymentStatus() != null ? order.getPaymentStatus().name() : null);
         dto.setCreatedAt(order.getCreatedAt());
         dto.setUpdatedAt(order.getUpdatedAt());
+        dto.setVersion(order.getVersion());
 
             if (order.getOrderItems() != null) {
                 dto.setItems(order.getOrderItems().stream()
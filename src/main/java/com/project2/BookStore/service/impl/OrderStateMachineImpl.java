@@ -0,0 +1,109 @@
+package com.project2.BookStore.service.impl;
+
+import com.project2.BookStore.exception.BadRequestException;
+import com.project2.BookStore.exception.ConflictException;
+import com.project2.BookStore.exception.ResourceNotFoundException;
+import com.project2.BookStore.model.Order;
+import com.project2.BookStore.service.OrderStateMachine;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class OrderStateMachineImpl implements OrderStateMachine {
+    // Khóa dòng đơn hàng nếu còn ở trạng thái nguồn hợp lệ (và đúng version), chuyển trạng thái, tăng version
+    // và ghi lịch sử trong cùng một câu lệnh. Không có dòng trả về nghĩa là đơn không chuyển được.
+    // Chỉ hoàn tiền cho đơn đã thanh toán; hủy đơn đã thanh toán thì giữ PAID để còn hoàn tiền
+    private static final String TRANSITION_SQL =
+        "WITH current AS (" +
+        "  SELECT id, status FROM orders WHERE id IN (:orderIds) AND status IN (:sources)%s " +
+        "    AND (:target <> 'REFUNDED' OR payment_status = 'PAID') ORDER BY id FOR UPDATE" +
+        "), updated AS (" +
+        "  UPDATE orders o SET status = :target, version = o.version + 1, updated_at = now(), " +
+        "    payment_status = CASE WHEN :target = 'DELIVERED' THEN 'PAID' " +
+        "      WHEN :target = 'CANCELLED' AND o.payment_status <> 'PAID' THEN 'FAILED' ELSE o.payment_status END " +
+        "  FROM current c WHERE o.id = c.id " +
+        "  RETURNING o.id, o.version, c.status AS from_status" +
+        "), recorded AS (" +
+        "  INSERT INTO order_status_transitions (id, order_id, from_status, to_status, version, created_at) " +
+        "  SELECT gen_random_uuid()::text, id, from_status, :target, version, now() FROM updated" +
+        ") " +
+        "SELECT id, from_status FROM updated";
+    private static final String VERSIONED_TRANSITION_SQL = String.format(TRANSITION_SQL, " AND version = :version");
+    private static final String UNVERSIONED_TRANSITION_SQL = String.format(TRANSITION_SQL, "");
+
+    private final NamedParameterJdbcTemplate namedParameterJdbcTemplate;
+
+    @Override
+    @Transactional
+    public Order.OrderStatus transition(String orderId, Order.OrderStatus target, Long expectedVersion) {
+        MapSqlParameterSource params = transitionParams(List.of(orderId), target).addValue("version", expectedVersion);
+        List<String> previous = namedParameterJdbcTemplate.query(
+            expectedVersion != null ? VERSIONED_TRANSITION_SQL : UNVERSIONED_TRANSITION_SQL, params,
+            (rs, rowNum) -> rs.getString("from_status"));
+        if (!previous.isEmpty()) {
+            Order.OrderStatus from = Order.OrderStatus.valueOf(previous.get(0));
+            log.info("Đơn hàng {} chuyển từ {} sang {}", orderId, from, target);
+            return from;
+        }
+
+        // Không chuyển được: đọc trạng thái hiện tại để báo lý do
+        List<Map<String, Object>> rows = namedParameterJdbcTemplate.queryForList(
+            "SELECT status, version, payment_status FROM orders WHERE id = :orderId",
+            new MapSqlParameterSource("orderId", orderId));
+        if (rows.isEmpty()) {
+            throw new ResourceNotFoundException("Không tìm thấy đơn hàng với ID: " + orderId);
+        }
+        Order.OrderStatus current = Order.OrderStatus.valueOf((String) rows.get(0).get("status"));
+        long currentVersion = ((Number) rows.get(0).get("version")).longValue();
+        if (expectedVersion != null && expectedVersion != currentVersion) {
+            throw new ConflictException(String.format(
+                "Đơn hàng đã được cập nhật bởi người khác (trạng thái hiện tại: %s), vui lòng tải lại", current));
+        }
+        if (target == Order.OrderStatus.REFUNDED && current.canTransitionTo(target)
+                && !Order.PaymentStatus.PAID.name().equals(rows.get(0).get("payment_status"))) {
+            throw new BadRequestException("Chỉ có thể hoàn tiền cho đơn hàng đã thanh toán");
+        }
+        throw new BadRequestException(String.format(
+            "Không thể chuyển đơn hàng từ trạng thái %s sang %s", current, target));
+    }
+
+    @Override
+    @Transactional
+    public Set<String> transitionAll(Collection<String> orderIds, Order.OrderStatus target) {
+        if (orderIds.isEmpty()) {
+            return Set.of();
+        }
+        MapSqlParameterSource params = transitionParams(orderIds, target);
+        Set<String> moved = new HashSet<>(namedParameterJdbcTemplate.query(UNVERSIONED_TRANSITION_SQL, params,
+            (rs, rowNum) -> rs.getString("id")));
+        log.info("Chuyển {}/{} đơn hàng sang {}", moved.size(), orderIds.size(), target);
+        return moved;
+    }
+
+    // Trạng thái nguồn lấy từ Order.OrderStatus.canTransitionTo, không có nguồn nào thì target không hợp lệ
+    private MapSqlParameterSource transitionParams(Collection<String> orderIds, Order.OrderStatus target) {
+        List<String> sources = Order.OrderStatus.sourcesOf(target).stream()
+            .map(Enum::name)
+            .collect(Collectors.toList());
+        if (sources.isEmpty()) {
+            throw new BadRequestException("Không thể chuyển đơn hàng sang trạng thái " + target);
+        }
+        return new MapSqlParameterSource()
+            .addValue("orderIds", orderIds)
+            .addValue("sources", sources)
+            .addValue("target", target.name());
+    }
+}
@@ -5,6 +5,7 @@ import com.project2.BookStore.model.Order;
 import com.project2.BookStore.model.Payment;
 import com.project2.BookStore.repository.OrderRepository;
 import com.project2.BookStore.repository.PaymentRepository;
+import com.project2.BookStore.service.InventoryReservationService;
 import com.project2.BookStore.service.PaymentService;
 import com.project2.BookStore.util.VNPayUtil;
 import jakarta.transaction.Transactional;
@@ -25,6 +26,7 @@ public class PaymentServiceImpl implements PaymentService {
     private final PaymentRepository paymentRepository;
     private final OrderRepository orderRepository;
     private final VNPayUtil vnPayUtil;
+    private final InventoryReservationService inventoryReservationService;
     
     @Value("${vnpay.currency}")
     private String currency;
@@ -105,6 +107,7 @@ public class PaymentServiceImpl implements PaymentService {
             Order order = payment.getOrder();
             order.setPaymentStatus(Order.PaymentStatus.PAID);
             orderRepository.save(order);
+            inventoryReservationService.release(order.getId());
         }
         return true;
     }
@@ -0,0 +1,280 @@
+package com.project2.BookStore.service.impl;
+
+import com.project2.BookStore.dto.BookResponseDTO;
+import com.project2.BookStore.model.Book;
+import com.project2.BookStore.model.Category;
+import com.project2.BookStore.repository.BookRepository;
+import com.project2.BookStore.service.TopSellerService;
+import com.project2.BookStore.util.TransactionUtil;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Bảng xếp hạng sách bán chạy trong bộ nhớ, sắp theo sold giảm dần (cùng sold thì theo id).
+ * Được cập nhật tăng dần khi đơn hàng thay đổi số lượng bán, đối soát lại với bảng books theo định kỳ.
+ * Trong lúc đối soát, các sách/danh mục thay đổi được ghi nhận lại; trước khi thay bảng xếp hạng mới,
+ * các sách đó được đọc lại từ database (lần cuối trong khóa ghi) để thay đổi không bị mất.
+ */
+@Slf4j
+@Service
+public class TopSellerServiceImpl implements TopSellerService {
+    private static final Comparator<Ranking> RANKING_ORDER = Comparator
+        .comparingInt(Ranking::sold).reversed()
+        .thenComparing(Ranking::bookId);
+
+    @Autowired
+    private BookRepository bookRepository;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private TreeSet<Ranking> rankings = new TreeSet<>(RANKING_ORDER);
+    private Map<String, BookResponseDTO> books = new HashMap<>();
+    private volatile boolean loaded = false;
+    // Sách/danh mục thay đổi trong lúc đang đối soát, null khi không đối soát. Được bảo vệ bởi khóa ghi
+    private Set<String> changedBooks;
+    private Map<String, BookResponseDTO.CategoryDTO> changedCategories;
+
+    @Override
+    @Transactional(readOnly = true)
+    @Scheduled(initialDelayString = "${bookstore.top-seller.reconcile-interval-ms:300000}",
+               fixedDelayString = "${bookstore.top-seller.reconcile-interval-ms:300000}")
+    public void rebuild() {
+        long start = System.currentTimeMillis();
+        lock.writeLock().lock();
+        try {
+            changedBooks = new HashSet<>();
+            changedCategories = new HashMap<>();
+        } finally {
+            lock.writeLock().unlock();
+        }
+
+        try {
+            TreeSet<Ranking> newRankings = new TreeSet<>(RANKING_ORDER);
+            Map<String, BookResponseDTO> newBooks = new HashMap<>();
+            try (Stream<Book> stream = bookRepository.streamAllWithCategory()) {
+                stream.forEach(book -> put(newRankings, newBooks, new BookResponseDTO(book)));
+            }
+
+            // Đọc lại phần lớn sách thay đổi trong lúc stream mà không chặn request đọc
+            refresh(newRankings, newBooks, takeChangedBooks());
+
+            lock.writeLock().lock();
+            try {
+                // Phần còn lại được đọc trong khóa ghi: không callback nào chen vào giữa lúc đọc và lúc thay
+                refresh(newRankings, newBooks, takeChangedBooks());
+                for (BookResponseDTO.CategoryDTO category : changedCategories.values()) {
+                    renameCategory(newBooks, category);
+                }
+                rankings = newRankings;
+                books = newBooks;
+                loaded = true;
+            } finally {
+                lock.writeLock().unlock();
+            }
+            log.info("Đã đối soát bảng xếp hạng sách bán chạy - Số sách: {}, Thời gian: {}ms",
+                newBooks.size(), System.currentTimeMillis() - start);
+        } finally {
+            lock.writeLock().lock();
+            try {
+                changedBooks = null;
+                changedCategories = null;
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+    }
+
+    @Override
+    public List<BookResponseDTO> getTopSellers(int limit) {
+        if (!loaded) {
+            // Chưa nạp xong khi vừa khởi động thì đọc trực tiếp từ database
+            log.info("Bảng xếp hạng chưa sẵn sàng, lấy sách bán chạy từ database");
+            return bookRepository.findAllByOrderBySoldDesc(PageRequest.of(0, limit)).stream()
+                .map(BookResponseDTO::new)
+                .collect(Collectors.toList());
+        }
+
+        lock.readLock().lock();
+        try {
+            List<BookResponseDTO> result = new ArrayList<>(Math.min(limit, rankings.size()));
+            for (Ranking ranking : rankings) {
+                if (result.size() >= limit) {
+                    break;
+                }
+                result.add(books.get(ranking.bookId()));
+            }
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public void bookSaved(Book book) {
+        TransactionUtil.afterCommit(() -> {
+            BookResponseDTO dto = new BookResponseDTO(book);
+            lock.writeLock().lock();
+            try {
+                put(rankings, books, dto);
+                markChanged(dto.getId());
+            } finally {
+                lock.writeLock().unlock();
+            }
+        });
+    }
+
+    @Override
+    public void bookDeleted(String bookId) {
+        TransactionUtil.afterCommit(() -> {
+            lock.writeLock().lock();
+            try {
+                remove(rankings, books, bookId);
+                markChanged(bookId);
+            } finally {
+                lock.writeLock().unlock();
+            }
+        });
+    }
+
+    @Override
+    public void applySoldChange(String bookId, int soldDelta) {
+        TransactionUtil.afterCommit(() -> {
+            lock.writeLock().lock();
+            try {
+                markChanged(bookId);
+                BookResponseDTO old = books.get(bookId);
+                if (old == null) {
+                    // Sách chưa có trong bảng xếp hạng, lần đối soát tiếp theo sẽ bổ sung
+                    return;
+                }
+                // Tạo bản sao thay vì sửa trực tiếp vì DTO cũ có thể đang được trả về cho request khác
+                put(rankings, books, new BookResponseDTO(
+                    old.getId(),
+                    old.getImage(),
+                    old.getMainText(),
+                    old.getAuthor(),
+                    old.getPrice(),
+                    old.getSold() + soldDelta,
+                    old.getQuantity() - soldDelta,
+                    old.getCategoryId(),
+                    old.getCategory()
+                ));
+            } finally {
+                lock.writeLock().unlock();
+            }
+        });
+    }
+
+    @Override
+    public void categorySaved(Category category) {
+        BookResponseDTO.CategoryDTO dto = new BookResponseDTO.CategoryDTO(category);
+        TransactionUtil.afterCommit(() -> {
+            lock.writeLock().lock();
+            try {
+                renameCategory(books, dto);
+                if (changedCategories != null) {
+                    changedCategories.put(dto.getId(), dto);
+                }
+            } finally {
+                lock.writeLock().unlock();
+            }
+        });
+    }
+
+    // Phải được gọi khi đang giữ khóa ghi
+    private void markChanged(String bookId) {
+        if (changedBooks != null) {
+            changedBooks.add(bookId);
+        }
+    }
+
+    private Set<String> takeChangedBooks() {
+        lock.writeLock().lock();
+        try {
+            Set<String> taken = changedBooks;
+            changedBooks = new HashSet<>();
+            return taken;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Thay các sách đã thay đổi trong bảng xếp hạng mới bằng dữ liệu hiện tại trong database
+    private void refresh(TreeSet<Ranking> targetRankings, Map<String, BookResponseDTO> targetBooks, Set<String> bookIds) {
+        if (bookIds.isEmpty()) {
+            return;
+        }
+        // Bỏ các entity đã nạp khi stream để đọc được giá trị mới nhất
+        entityManager.clear();
+        Map<String, Book> current = bookRepository.findAllWithCategoryByIdIn(bookIds).stream()
+            .collect(Collectors.toMap(Book::getId, Function.identity()));
+        for (String bookId : bookIds) {
+            Book book = current.get(bookId);
+            if (book != null) {
+                put(targetRankings, targetBooks, new BookResponseDTO(book));
+            } else {
+                remove(targetRankings, targetBooks, bookId);
+            }
+        }
+    }
+
+    private static void put(TreeSet<Ranking> targetRankings, Map<String, BookResponseDTO> targetBooks, BookResponseDTO dto) {
+        BookResponseDTO old = targetBooks.put(dto.getId(), dto);
+        if (old != null) {
+            targetRankings.remove(new Ranking(old.getId(), old.getSold()));
+        }
+        targetRankings.add(new Ranking(dto.getId(), dto.getSold()));
+    }
+
+    private static void remove(TreeSet<Ranking> targetRankings, Map<String, BookResponseDTO> targetBooks, String bookId) {
+        BookResponseDTO old = targetBooks.remove(bookId);
+        if (old != null) {
+            targetRankings.remove(new Ranking(old.getId(), old.getSold()));
+        }
+    }
+
+    // Danh mục đổi tên: thay bản sao DTO của các sách thuộc danh mục (số lượng bán không đổi nên thứ hạng giữ nguyên)
+    private static void renameCategory(Map<String, BookResponseDTO> targetBooks, BookResponseDTO.CategoryDTO category) {
+        for (Map.Entry<String, BookResponseDTO> entry : targetBooks.entrySet()) {
+            BookResponseDTO old = entry.getValue();
+            if (category.getId().equals(old.getCategoryId())) {
+                entry.setValue(new BookResponseDTO(
+                    old.getId(),
+                    old.getImage(),
+                    old.getMainText(),
+                    old.getAuthor(),
+                    old.getPrice(),
+                    old.getSold(),
+                    old.getQuantity(),
+                    old.getCategoryId(),
+                    category
+                ));
+            }
+        }
+    }
+
+    private record Ranking(String bookId, int sold) {
+    }
+}
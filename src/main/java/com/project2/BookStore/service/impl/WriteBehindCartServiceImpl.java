@@ -0,0 +1,297 @@
+package com.project2.BookStore.service.impl;
+
+import com.project2.BookStore.dto.CartBulkRequest;
+import com.project2.BookStore.dto.CartItemDTO;
+import com.project2.BookStore.dto.CartItemDetailDTO;
+import com.project2.BookStore.exception.BadRequestException;
+import com.project2.BookStore.model.Book;
+import com.project2.BookStore.model.CartItem;
+import com.project2.BookStore.repository.BookRepository;
+import com.project2.BookStore.service.CartService;
+import com.project2.BookStore.service.CartStore;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * CartService dùng CartStore (giỏ hàng trong bộ nhớ, ghi trễ xuống cart_items).
+ * Chỉ đọc bảng books để kiểm tra tồn kho/giá, không mở transaction JPA cho mỗi thao tác giỏ hàng.
+ */
+@Slf4j
+@Service
+@ConditionalOnProperty(name = "bookstore.cart.write-behind.enabled", havingValue = "true")
+public class WriteBehindCartServiceImpl implements CartService {
+
+    @Autowired
+    private CartStore cartStore;
+
+    @Autowired
+    private BookRepository bookRepository;
+
+    // Kiểm tra giới hạn giỏ hàng trên bản chụp giỏ hàng đang được giữ khóa
+    private void validateCartLimits(List<CartStore.Line> cart, int newQuantity, long newItemPrice) {
+        long currentTotalItems = 0;
+        long currentTotalValue = 0;
+        for (CartStore.Line line : cart) {
+            currentTotalItems += line.quantity();
+            currentTotalValue += line.totalPrice();
+        }
+
+        if (currentTotalItems + newQuantity > CartServiceImpl.MAX_TOTAL_ITEMS) {
+            throw new BadRequestException(
+                String.format("Tổng số lượng sách trong giỏ không được vượt quá %d. Hiện tại: %d",
+                    CartServiceImpl.MAX_TOTAL_ITEMS, currentTotalItems)
+            );
+        }
+        if (currentTotalValue + (newItemPrice * newQuantity) > CartServiceImpl.MAX_TOTAL_VALUE) {
+            throw new BadRequestException(
+                String.format("Tổng giá trị giỏ hàng không được vượt quá %d. Hiện tại: %d",
+                    CartServiceImpl.MAX_TOTAL_VALUE, currentTotalValue)
+            );
+        }
+    }
+
+    private CartItem toCartItem(Book book, int quantity) {
+        CartItem cartItem = new CartItem();
+        cartItem.setBook(book);
+        cartItem.setQuantity(quantity);
+        cartItem.setTotalPrice(book.getPrice() * quantity);
+        return cartItem;
+    }
+
+    // Ghép các dòng trong giỏ với thông tin sách (một câu query), bỏ qua sách đã bị xóa
+    private List<CartItemDetailDTO> toDetails(List<CartStore.Line> lines) {
+        if (lines.isEmpty()) {
+            return new ArrayList<>();
+        }
+        Map<String, Book> books = bookRepository.findAllWithCategoryByIdIn(
+                lines.stream().map(CartStore.Line::bookId).collect(Collectors.toList()))
+            .stream()
+            .collect(Collectors.toMap(Book::getId, Function.identity()));
+        return lines.stream()
+            .filter(line -> books.containsKey(line.bookId()))
+            .map(line -> new CartItemDetailDTO(toCartItem(books.get(line.bookId()), line.quantity())))
+            .collect(Collectors.toList());
+    }
+
+    @Override
+    public CartItem addToCart(String userId, CartItemDTO cartItemDTO) {
+        log.info("Bắt đầu thêm sách vào giỏ hàng. UserId: {}, BookId: {}", userId, cartItemDTO.getBookId());
+        try {
+            Book book = bookRepository.findById(cartItemDTO.getBookId())
+                .orElseThrow(() -> new BadRequestException("Không tìm thấy sách"));
+
+            if (book.getQuantity() < cartItemDTO.getQuantity()) {
+                throw new BadRequestException(
+                    String.format("Số lượng sách '%s' trong kho không đủ. Còn lại: %d",
+                        book.getMainText(), book.getQuantity())
+                );
+            }
+
+            // Đọc dòng hiện tại, kiểm tra và ghi dưới cùng một khóa để hai lần thêm đồng thời không mất số lượng
+            CartStore.Line saved = cartStore.compute(userId, book.getId(), (cart, existing) -> {
+                validateCartLimits(cart, cartItemDTO.getQuantity(), book.getPrice());
+
+                int newQuantity = cartItemDTO.getQuantity() + (existing != null ? existing.quantity() : 0);
+                if (newQuantity > book.getQuantity()) {
+                    throw new BadRequestException(
+                        String.format("Tổng số lượng sách '%s' trong giỏ vượt quá số lượng trong kho. Còn lại: %d",
+                            book.getMainText(), book.getQuantity())
+                    );
+                }
+                return new CartStore.Line(book.getId(), newQuantity, book.getPrice());
+            });
+            log.info("Lưu giỏ hàng thành công. BookId: {}, Số lượng: {}", book.getId(), saved.quantity());
+            return toCartItem(book, saved.quantity());
+        } catch (BadRequestException e) {
+            log.warn("Lỗi khi thêm sách vào giỏ hàng: {}", e.getMessage());
+            throw e;
+        } catch (Exception e) {
+            log.error("Lỗi không mong muốn khi thêm sách vào giỏ hàng: {}", e.getMessage());
+            throw new BadRequestException("Không thể thêm sách vào giỏ hàng: " + e.getMessage());
+        }
+    }
+
+    @Override
+    public CartItem updateCartItem(String userId, CartItemDTO cartItemDTO) {
+        log.info("Bắt đầu cập nhật giỏ hàng. UserId: {}, BookId: {}, Quantity: {}",
+            userId, cartItemDTO.getBookId(), cartItemDTO.getQuantity());
+        try {
+            Book book = bookRepository.findById(cartItemDTO.getBookId())
+                .orElseThrow(() -> new BadRequestException("Không tìm thấy sách"));
+            if (book.getQuantity() <= 0) {
+                throw new BadRequestException("Sách đã hết hàng");
+            }
+            if (book.getPrice() <= 0) {
+                throw new BadRequestException("Giá sách không hợp lệ");
+            }
+            if (book.getQuantity() < cartItemDTO.getQuantity()) {
+                throw new BadRequestException(
+                    String.format("Số lượng sách trong kho không đủ. Còn lại: %d", book.getQuantity())
+                );
+            }
+
+            cartStore.compute(userId, book.getId(), (cart, existing) -> {
+                if (existing == null) {
+                    throw new BadRequestException("Không tìm thấy sách trong giỏ hàng");
+                }
+                validateCartLimits(cart, cartItemDTO.getQuantity() - existing.quantity(), book.getPrice());
+                return new CartStore.Line(book.getId(), cartItemDTO.getQuantity(), book.getPrice());
+            });
+            log.info("Cập nhật giỏ hàng thành công. BookId: {}", book.getId());
+            return toCartItem(book, cartItemDTO.getQuantity());
+        } catch (BadRequestException e) {
+            log.warn("Lỗi khi cập nhật giỏ hàng: {}", e.getMessage());
+            throw e;
+        } catch (Exception e) {
+            log.error("Lỗi không mong muốn khi cập nhật giỏ hàng: {}", e.getMessage());
+            throw new BadRequestException("Không thể cập nhật giỏ hàng: " + e.getMessage());
+        }
+    }
+
+    @Override
+    public CartItem removeFromCart(String userId, String bookId) {
+        log.info("Bắt đầu xóa sách khỏi giỏ hàng. UserId: {}, BookId: {}", userId, bookId);
+        try {
+            CartStore.Line removed = cartStore.remove(userId, bookId);
+            if (removed == null) {
+                throw new BadRequestException("Không tìm thấy sách trong giỏ hàng");
+            }
+
+            CartItem item = bookRepository.findById(bookId)
+                .map(book -> toCartItem(book, removed.quantity()))
+                .orElseGet(() -> {
+                    CartItem cartItem = new CartItem();
+                    cartItem.setQuantity(removed.quantity());
+                    cartItem.setTotalPrice(removed.totalPrice());
+                    return cartItem;
+                });
+            log.info("Xóa sách khỏi giỏ hàng thành công. BookId: {}", bookId);
+            return item;
+        } catch (BadRequestException e) {
+            log.warn("Lỗi khi xóa sách khỏi giỏ hàng: {}", e.getMessage());
+            throw e;
+        } catch (Exception e) {
+            log.error("Lỗi không mong muốn khi xóa sách khỏi giỏ hàng: {}", e.getMessage());
+            throw new BadRequestException("Không thể xóa sách khỏi giỏ hàng: " + e.getMessage());
+        }
+    }
+
+    @Override
+    public List<CartItemDetailDTO> clearCart(String userId) {
+        log.info("Bắt đầu xóa toàn bộ giỏ hàng. UserId: {}", userId);
+        try {
+            List<CartItemDetailDTO> removedItems = toDetails(cartStore.clear(userId));
+            log.info("Xóa toàn bộ giỏ hàng thành công. Số lượng items: {}", removedItems.size());
+            return removedItems;
+        } catch (Exception e) {
+            log.error("Lỗi không mong muốn khi xóa toàn bộ giỏ hàng: {}", e.getMessage());
+            throw new BadRequestException("Không thể xóa toàn bộ giỏ hàng: " + e.getMessage());
+        }
+    }
+
+    @Override
+    public List<CartItemDetailDTO> getCartItems(String userId) {
+        log.info("Bắt đầu lấy danh sách sách trong giỏ hàng. UserId: {}", userId);
+        try {
+            List<CartItemDetailDTO> cartItems = toDetails(cartStore.getCart(userId));
+            log.info("Lấy danh sách sách trong giỏ hàng thành công. Số lượng: {}", cartItems.size());
+            return cartItems;
+        } catch (Exception e) {
+            log.error("Lỗi không mong muốn khi lấy danh sách sách trong giỏ hàng: {}", e.getMessage());
+            throw new BadRequestException("Không thể lấy danh sách sách trong giỏ hàng: " + e.getMessage());
+        }
+    }
+
+    @Override
+    public CartItemDetailDTO getCartItem(String userId, String bookId) {
+        log.info("Bắt đầu lấy thông tin sách trong giỏ hàng. UserId: {}, BookId: {}", userId, bookId);
+        try {
+            CartStore.Line line = cartStore.getLine(userId, bookId);
+            if (line == null) {
+                throw new BadRequestException("Không tìm thấy sách trong giỏ hàng");
+            }
+            List<CartItemDetailDTO> details = toDetails(List.of(line));
+            if (details.isEmpty()) {
+                throw new BadRequestException("Không tìm thấy sách");
+            }
+            return details.get(0);
+        } catch (BadRequestException e) {
+            log.warn("Lỗi khi lấy thông tin sách trong giỏ hàng: {}", e.getMessage());
+            throw e;
+        } catch (Exception e) {
+            log.error("Lỗi không mong muốn khi lấy thông tin sách trong giỏ hàng: {}", e.getMessage());
+            throw new BadRequestException("Không thể lấy thông tin sách trong giỏ hàng: " + e.getMessage());
+        }
+    }
+
+    @Override
+    public List<CartItemDetailDTO> bulkUpdateCart(String userId, List<CartBulkRequest.Item> items) {
+        log.info("Bắt đầu cập nhật giỏ hàng theo lô. UserId: {}, Số thay đổi: {}", userId, items.size());
+        try {
+            Map<String, Integer> changes = CartServiceImpl.normalizeBulkItems(items);
+
+            // Toàn bộ sách cần kiểm tra trong một câu query, trước khi giữ khóa giỏ hàng
+            Map<String, Book> books = bookRepository.findAllWithCategoryByIdIn(changes.keySet()).stream()
+                .collect(Collectors.toMap(Book::getId, Function.identity()));
+
+            // Áp dụng và kiểm tra trên giỏ hàng hiện tại dưới cùng một khóa; nếu có lỗi thì giỏ hàng giữ nguyên
+            List<CartStore.Line> result = cartStore.computeCart(userId, current -> {
+                Map<String, CartStore.Line> lines = new LinkedHashMap<>();
+                for (CartStore.Line line : current) {
+                    lines.put(line.bookId(), line);
+                }
+                for (Map.Entry<String, Integer> change : changes.entrySet()) {
+                    String bookId = change.getKey();
+                    int quantity = change.getValue();
+                    if (quantity == 0) {
+                        lines.remove(bookId);
+                        continue;
+                    }
+                    Book book = books.get(bookId);
+                    CartServiceImpl.validateBulkLine(book, bookId, quantity);
+                    CartStore.Line line = lines.get(bookId);
+                    // Giữ nguyên dòng nếu không đổi để không phải ghi lại
+                    if (line == null || line.quantity() != quantity || line.price() != book.getPrice()) {
+                        lines.put(bookId, new CartStore.Line(bookId, quantity, book.getPrice()));
+                    }
+                }
+
+                long totalItems = 0;
+                long totalValue = 0;
+                for (CartStore.Line line : lines.values()) {
+                    totalItems += line.quantity();
+                    totalValue += line.totalPrice();
+                }
+                CartServiceImpl.validateBulkTotals(totalItems, totalValue);
+                return new ArrayList<>(lines.values());
+            });
+            log.info("Cập nhật giỏ hàng theo lô thành công. Số sách trong giỏ: {}", result.size());
+            return toDetails(result);
+        } catch (BadRequestException e) {
+            log.warn("Lỗi khi cập nhật giỏ hàng theo lô: {}", e.getMessage());
+            throw e;
+        } catch (Exception e) {
+            log.error("Lỗi không mong muốn khi cập nhật giỏ hàng theo lô: {}", e.getMessage());
+            throw new BadRequestException("Không thể cập nhật giỏ hàng: " + e.getMessage());
+        }
+    }
+
+    @Override
+    public void flushCart(String userId) {
+        cartStore.flush(userId);
+    }
+
+    @Override
+    public void evictCart(String userId) {
+        cartStore.evict(userId);
+    }
+}
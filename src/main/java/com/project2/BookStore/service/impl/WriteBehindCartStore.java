@@ -0,0 +1,397 @@
+package com.project2.BookStore.service.impl;
+
+import com.project2.BookStore.service.CartStore;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.dao.NonTransientDataAccessException;
+import org.springframework.dao.NonTransientDataAccessResourceException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.UnaryOperator;
+
+/**
+ * Giỏ hàng trong bộ nhớ, ghi trễ (write-behind) xuống bảng cart_items.
+ * Mỗi user được khóa theo stripe (hash userId), đọc/ghi không truy cập DB trừ lần nạp đầu tiên.
+ * Các thay đổi được gộp theo (user, sách) và ghi theo lô định kỳ; sau khi khởi động lại,
+ * giỏ hàng được nạp lại từ cart_items ở lần truy cập đầu tiên.
+ * Các lần ghi được tuần tự hóa bằng một khóa ghi chung: flush của một user luôn chờ lần ghi đang chạy,
+ * và một dòng chỉ hết "dirty" khi giá trị đã ghi được commit và chưa bị thay đổi tiếp.
+ * Mỗi user được ghi trong một transaction riêng; nếu giỏ hàng của một user ghi lỗi liên tiếp quá max-failures lần,
+ * các dòng được ghi lại từng dòng một và dòng vẫn lỗi bị bỏ (giỏ hàng sau đó được nạp lại từ cart_items).
+ * Bật bằng bookstore.cart.write-behind.enabled=true.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "bookstore.cart.write-behind.enabled", havingValue = "true")
+public class WriteBehindCartStore implements CartStore {
+    private static final String SELECT_CART_SQL =
+        "SELECT ci.book_id, ci.quantity, b.price FROM cart_items ci JOIN books b ON b.id = ci.book_id " +
+        "WHERE ci.user_id = ? ORDER BY ci.created_at";
+    // Bỏ qua dòng nếu sách/user đã bị xóa trong lúc chờ ghi, tránh làm hỏng cả lô
+    private static final String UPSERT_SQL =
+        "INSERT INTO cart_items (id, user_id, book_id, quantity, total_price, created_at, updated_at) " +
+        "SELECT ?, ?, ?, ?, ?, now(), now() " +
+        "WHERE EXISTS (SELECT 1 FROM users WHERE id = ?) AND EXISTS (SELECT 1 FROM books WHERE id = ?) " +
+        "ON CONFLICT (user_id, book_id) DO UPDATE " +
+        "SET quantity = EXCLUDED.quantity, total_price = EXCLUDED.total_price, updated_at = now()";
+    private static final String DELETE_SQL = "DELETE FROM cart_items WHERE user_id = ? AND book_id = ?";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    // Luôn ghi trong transaction riêng: flush được gọi từ trong transaction đặt hàng,
+    // dòng chỉ được bỏ dirty khi chính lần ghi đã commit, không phụ thuộc đơn hàng có rollback hay không
+    private TransactionTemplate writeTransaction;
+
+    @Value("${bookstore.cart.write-behind.stripes:64}")
+    private int stripeCount;
+
+    @Value("${bookstore.cart.write-behind.idle-ms:1800000}")
+    private long idleMillis;
+
+    @Value("${bookstore.cart.write-behind.max-failures:5}")
+    private int maxFailures;
+
+    private final Map<String, UserCart> carts = new ConcurrentHashMap<>();
+    // Giữ trong suốt quá trình lấy thay đổi + ghi xuống DB; luôn lấy trước khóa stripe của user
+    private final Object flushLock = new Object();
+    private Object[] stripes;
+
+    @PostConstruct
+    public void init() {
+        stripes = new Object[Math.max(1, stripeCount)];
+        for (int i = 0; i < stripes.length; i++) {
+            stripes[i] = new Object();
+        }
+        writeTransaction = new TransactionTemplate(transactionTemplate.getTransactionManager());
+        writeTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        log.info("Bật chế độ giỏ hàng ghi trễ. Số stripe: {}", stripes.length);
+    }
+
+    @Override
+    public List<Line> getCart(String userId) {
+        synchronized (lockFor(userId)) {
+            return new ArrayList<>(load(userId).lines.values());
+        }
+    }
+
+    @Override
+    public Line getLine(String userId, String bookId) {
+        synchronized (lockFor(userId)) {
+            return load(userId).lines.get(bookId);
+        }
+    }
+
+    @Override
+    public void put(String userId, Line line) {
+        synchronized (lockFor(userId)) {
+            UserCart cart = load(userId);
+            cart.lines.put(line.bookId(), line);
+            cart.dirty.add(line.bookId());
+        }
+    }
+
+    @Override
+    public Line compute(String userId, String bookId, LineUpdate update) {
+        synchronized (lockFor(userId)) {
+            UserCart cart = load(userId);
+            Line existing = cart.lines.get(bookId);
+            Line updated = update.apply(new ArrayList<>(cart.lines.values()), existing);
+            if (updated == null) {
+                if (existing != null) {
+                    cart.lines.remove(bookId);
+                    cart.dirty.add(bookId);
+                }
+                return null;
+            }
+            if (!updated.bookId().equals(bookId)) {
+                throw new IllegalArgumentException("Dòng mới không cùng sách với dòng cần cập nhật");
+            }
+            if (!updated.equals(existing)) {
+                cart.lines.put(bookId, updated);
+                cart.dirty.add(bookId);
+            }
+            return updated;
+        }
+    }
+
+    @Override
+    public List<Line> computeCart(String userId, UnaryOperator<List<Line>> update) {
+        synchronized (lockFor(userId)) {
+            UserCart cart = load(userId);
+            List<Line> updated = update.apply(new ArrayList<>(cart.lines.values()));
+            Map<String, Line> lines = new LinkedHashMap<>();
+            for (Line line : updated) {
+                lines.put(line.bookId(), line);
+            }
+            for (String bookId : cart.lines.keySet()) {
+                if (!lines.containsKey(bookId)) {
+                    cart.dirty.add(bookId);
+                }
+            }
+            for (Line line : lines.values()) {
+                if (!line.equals(cart.lines.get(line.bookId()))) {
+                    cart.dirty.add(line.bookId());
+                }
+            }
+            cart.lines.clear();
+            cart.lines.putAll(lines);
+            return new ArrayList<>(lines.values());
+        }
+    }
+
+    @Override
+    public Line remove(String userId, String bookId) {
+        synchronized (lockFor(userId)) {
+            UserCart cart = load(userId);
+            Line removed = cart.lines.remove(bookId);
+            if (removed != null) {
+                cart.dirty.add(bookId);
+            }
+            return removed;
+        }
+    }
+
+    @Override
+    public List<Line> clear(String userId) {
+        synchronized (lockFor(userId)) {
+            UserCart cart = load(userId);
+            List<Line> removed = new ArrayList<>(cart.lines.values());
+            cart.dirty.addAll(cart.lines.keySet());
+            cart.lines.clear();
+            return removed;
+        }
+    }
+
+    @Override
+    public void flush(String userId) {
+        synchronized (flushLock) {
+            List<PendingWrite> writes;
+            synchronized (lockFor(userId)) {
+                UserCart cart = carts.get(userId);
+                if (cart == null) {
+                    return;
+                }
+                writes = drain(userId, cart);
+            }
+            write(userId, writes);
+        }
+    }
+
+    @Override
+    public void evict(String userId) {
+        synchronized (lockFor(userId)) {
+            UserCart cart = carts.get(userId);
+            // Còn thay đổi chưa ghi (user sửa giỏ trong lúc đặt hàng) thì giữ lại, thay đổi mới hơn được ưu tiên
+            if (cart != null && cart.dirty.isEmpty()) {
+                carts.remove(userId);
+            }
+        }
+    }
+
+    // Ghi thay đổi đang chờ của từng user (mỗi user một transaction), sau đó bỏ khỏi bộ nhớ các giỏ hàng lâu không dùng
+    @Scheduled(initialDelayString = "${bookstore.cart.write-behind.flush-interval-ms:1000}",
+               fixedDelayString = "${bookstore.cart.write-behind.flush-interval-ms:1000}")
+    public void flushAll() {
+        for (String userId : carts.keySet()) {
+            flush(userId);
+        }
+        evictIdle();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        log.info("Ghi các thay đổi giỏ hàng còn lại trước khi tắt ứng dụng");
+        flushAll();
+    }
+
+    private Object lockFor(String userId) {
+        return stripes[Math.floorMod(userId.hashCode(), stripes.length)];
+    }
+
+    // Phải được gọi khi đang giữ khóa của user
+    private UserCart load(String userId) {
+        UserCart cart = carts.get(userId);
+        if (cart == null) {
+            UserCart loaded = new UserCart();
+            jdbcTemplate.query(SELECT_CART_SQL, rs -> {
+                String bookId = rs.getString("book_id");
+                loaded.lines.put(bookId, new Line(bookId, rs.getInt("quantity"), rs.getLong("price")));
+            }, userId);
+            carts.put(userId, loaded);
+            cart = loaded;
+        }
+        cart.lastAccess = System.currentTimeMillis();
+        return cart;
+    }
+
+    // Chụp giá trị hiện tại của các dòng đã thay đổi; các dòng vẫn giữ trạng thái dirty cho tới khi ghi xong.
+    // Phải được gọi khi đang giữ khóa của user
+    private List<PendingWrite> drain(String userId, UserCart cart) {
+        if (cart.dirty.isEmpty()) {
+            return List.of();
+        }
+        List<PendingWrite> writes = new ArrayList<>(cart.dirty.size());
+        for (String bookId : cart.dirty) {
+            writes.add(new PendingWrite(userId, bookId, cart.lines.get(bookId)));
+        }
+        return writes;
+    }
+
+    // Ghi các thay đổi của một user trong một transaction.
+    // Phải được gọi khi đang giữ flushLock
+    private void write(String userId, List<PendingWrite> writes) {
+        if (writes.isEmpty()) {
+            return;
+        }
+        try {
+            execute(writes);
+            log.debug("Đã ghi {} thay đổi giỏ hàng của user {} xuống database", writes.size(), userId);
+        } catch (Exception e) {
+            int failures = recordFailure(userId);
+            if (failures < maxFailures) {
+                // Các dòng vẫn còn dirty nên sẽ được ghi lại ở lần sau
+                log.error("Lỗi khi ghi giỏ hàng của user {} xuống database (lần {}), sẽ thử lại ở lần ghi sau: {}",
+                    userId, failures, e.getMessage());
+                return;
+            }
+            log.error("Ghi giỏ hàng của user {} lỗi {} lần liên tiếp, ghi lại từng dòng để tách dòng lỗi: {}",
+                userId, failures, e.getMessage());
+            writeEach(userId, writes);
+            return;
+        }
+        resetFailures(userId);
+        markWritten(userId, writes);
+    }
+
+    // Ghi từng dòng trong transaction riêng; dòng bị dữ liệu từ chối (không phải lỗi kết nối) bị bỏ
+    // để không chặn các lần ghi sau, lỗi tạm thời thì giữ lại dirty để thử lại
+    private void writeEach(String userId, List<PendingWrite> writes) {
+        List<PendingWrite> written = new ArrayList<>();
+        List<PendingWrite> dropped = new ArrayList<>();
+        for (PendingWrite write : writes) {
+            try {
+                execute(List.of(write));
+                written.add(write);
+            } catch (NonTransientDataAccessException e) {
+                if (e instanceof NonTransientDataAccessResourceException) {
+                    log.error("Mất kết nối database khi ghi giỏ hàng của user {}, sẽ thử lại ở lần ghi sau: {}",
+                        userId, e.getMessage());
+                    markWritten(userId, written);
+                    return;
+                }
+                log.error("Bỏ thay đổi giỏ hàng không ghi được. UserId: {}, BookId: {}, Lỗi: {}",
+                    userId, write.bookId(), e.getMessage());
+                dropped.add(write);
+            } catch (Exception e) {
+                log.error("Lỗi khi ghi giỏ hàng của user {}, sẽ thử lại ở lần ghi sau: {}", userId, e.getMessage());
+                markWritten(userId, written);
+                return;
+            }
+        }
+        resetFailures(userId);
+        markWritten(userId, written);
+        // Dòng bị bỏ được coi như đã xử lý; giỏ hàng được nạp lại từ cart_items để khớp với dữ liệu thật
+        if (!dropped.isEmpty()) {
+            markWritten(userId, dropped);
+            evict(userId);
+        }
+    }
+
+    private void execute(List<PendingWrite> writes) {
+        List<Object[]> deletes = new ArrayList<>();
+        List<Object[]> upserts = new ArrayList<>();
+        for (PendingWrite write : writes) {
+            if (write.line() == null) {
+                deletes.add(new Object[]{write.userId(), write.bookId()});
+            } else {
+                Line line = write.line();
+                upserts.add(new Object[]{UUID.randomUUID().toString(), write.userId(), write.bookId(),
+                    line.quantity(), line.totalPrice(), write.userId(), write.bookId()});
+            }
+        }
+        writeTransaction.executeWithoutResult(status -> {
+            if (!deletes.isEmpty()) {
+                jdbcTemplate.batchUpdate(DELETE_SQL, deletes);
+            }
+            if (!upserts.isEmpty()) {
+                jdbcTemplate.batchUpdate(UPSERT_SQL, upserts);
+            }
+        });
+    }
+
+    private int recordFailure(String userId) {
+        synchronized (lockFor(userId)) {
+            UserCart cart = carts.get(userId);
+            return cart != null ? ++cart.failures : maxFailures;
+        }
+    }
+
+    private void resetFailures(String userId) {
+        synchronized (lockFor(userId)) {
+            UserCart cart = carts.get(userId);
+            if (cart != null) {
+                cart.failures = 0;
+            }
+        }
+    }
+
+    // Đã commit: bỏ dirty cho các dòng không bị thay đổi tiếp trong lúc ghi
+    private void markWritten(String userId, List<PendingWrite> writes) {
+        synchronized (lockFor(userId)) {
+            UserCart cart = carts.get(userId);
+            if (cart == null) {
+                return;
+            }
+            for (PendingWrite write : writes) {
+                if (Objects.equals(cart.lines.get(write.bookId()), write.line())) {
+                    cart.dirty.remove(write.bookId());
+                }
+            }
+        }
+    }
+
+    private void evictIdle() {
+        long threshold = System.currentTimeMillis() - idleMillis;
+        for (String userId : carts.keySet()) {
+            synchronized (lockFor(userId)) {
+                UserCart cart = carts.get(userId);
+                if (cart != null && cart.dirty.isEmpty() && cart.lastAccess < threshold) {
+                    carts.remove(userId);
+                }
+            }
+        }
+    }
+
+    private static class UserCart {
+        private final Map<String, Line> lines = new LinkedHashMap<>();
+        private final Set<String> dirty = new HashSet<>();
+        private long lastAccess;
+        // Số lần ghi lỗi liên tiếp
+        private int failures;
+    }
+
+    // line == null nghĩa là dòng đã bị xóa khỏi giỏ
+    private record PendingWrite(String userId, String bookId, Line line) {
+    }
+}
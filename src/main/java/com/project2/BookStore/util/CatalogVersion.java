@@ -0,0 +1,22 @@
+package com.project2.BookStore.util;
+
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bộ đếm phiên bản của catalog (sách + danh mục), tăng sau mỗi lần ghi đã commit.
+ * Các cache kết quả đọc đưa phiên bản vào khóa cache nên tự hết hiệu lực khi catalog thay đổi.
+ */
+@Component
+public class CatalogVersion {
+    private final AtomicLong version = new AtomicLong();
+
+    public long current() {
+        return version.get();
+    }
+
+    public void bumpAfterCommit() {
+        TransactionUtil.afterCommit(version::incrementAndGet);
+    }
+}
@@ -0,0 +1,35 @@
+package com.project2.BookStore.util;
+
+import com.project2.BookStore.exception.BadRequestException;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * Mã hóa/giải mã cursor dùng cho phân trang keyset.
+ * Cursor là chuỗi base64 (URL-safe) của các giá trị khóa sắp xếp, client chỉ cần gửi lại nguyên văn.
+ */
+public final class CursorUtil {
+    private static final String SEPARATOR = "\u001F";
+
+    private CursorUtil() {
+    }
+
+    public static String encode(String... parts) {
+        String raw = String.join(SEPARATOR, parts);
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public static String[] decode(String cursor, int expectedParts) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            String[] parts = raw.split(SEPARATOR, -1);
+            if (parts.length != expectedParts) {
+                throw new BadRequestException("Cursor không hợp lệ");
+            }
+            return parts;
+        } catch (IllegalArgumentException e) {
+            throw new BadRequestException("Cursor không hợp lệ");
+        }
+    }
+}
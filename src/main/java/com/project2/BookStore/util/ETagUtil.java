@@ -0,0 +1,56 @@
+package com.project2.BookStore.util;
+
+import com.project2.BookStore.dto.VersionStampDTO;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+
+/**
+ * Tạo weak ETag từ phiên bản dữ liệu và tham số request, dùng cho conditional GET.
+ * Controller kiểm tra If-None-Match/If-Modified-Since trước khi nạp và chuyển đổi dữ liệu,
+ * nếu khớp thì trả 304 không có body.
+ */
+public final class ETagUtil {
+
+    private ETagUtil() {
+    }
+
+    public static String weakETag(VersionStampDTO version, Object... parts) {
+        StringBuilder raw = new StringBuilder()
+            .append(version.getCount()).append('|')
+            .append(version.getLastModified());
+        for (Object part : parts) {
+            raw.append('|').append(part);
+        }
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-256").digest(raw.toString().getBytes(StandardCharsets.UTF_8));
+            return "W/\"" + HexFormat.of().formatHex(hash, 0, 16) + "\"";
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 không được hỗ trợ", e);
+        }
+    }
+
+    // Client được lưu response nhưng phải xác thực lại (no-cache) trước mỗi lần dùng
+    public static ResponseEntity.BodyBuilder ok(String etag, VersionStampDTO version) {
+        ResponseEntity.BodyBuilder builder = ResponseEntity.ok().cacheControl(CacheControl.noCache());
+        if (etag != null) {
+            builder.eTag(etag);
+        }
+        if (version.lastModifiedMillis() >= 0) {
+            builder.lastModified(version.lastModifiedMillis());
+        }
+        return builder;
+    }
+
+    public static <T> ResponseEntity<T> notModified(String etag) {
+        return ResponseEntity.status(HttpStatus.NOT_MODIFIED)
+            .eTag(etag)
+            .cacheControl(CacheControl.noCache())
+            .build();
+    }
+}
@@ -0,0 +1,80 @@
+package com.project2.BookStore.util;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Timer wheel đơn giản: mỗi slot là một tick, khóa có hạn xa hơn một vòng nằm chung slot và chờ đến đúng tick.
+ * Thời gian được truyền vào từ bên ngoài (millis), an toàn khi dùng từ nhiều thread.
+ */
+public class TimerWheel<K> {
+    private final long tickMillis;
+    private final List<Map<K, Long>> slots;
+    // khóa -> tick đến hạn, để gỡ đúng slot
+    private final Map<K, Long> deadlines = new HashMap<>();
+    private long lastTick;
+
+    public TimerWheel(int wheelSize, long tickMillis, long nowMillis) {
+        if (wheelSize <= 0 || tickMillis <= 0) {
+            throw new IllegalArgumentException("Kích thước wheel và độ dài tick phải lớn hơn 0");
+        }
+        this.tickMillis = tickMillis;
+        this.slots = new ArrayList<>(wheelSize);
+        for (int i = 0; i < wheelSize; i++) {
+            slots.add(new HashMap<>());
+        }
+        this.lastTick = nowMillis / tickMillis;
+    }
+
+    // Làm tròn lên tick kế tiếp; đã quá hạn thì đến hạn ở tick ngay sau
+    public synchronized void schedule(K key, long dueMillis) {
+        unschedule(key);
+        long deadline = Math.max(lastTick + 1, (dueMillis + tickMillis - 1) / tickMillis);
+        slotOf(deadline).put(key, deadline);
+        deadlines.put(key, deadline);
+    }
+
+    public synchronized boolean unschedule(K key) {
+        Long deadline = deadlines.remove(key);
+        if (deadline == null) {
+            return false;
+        }
+        slotOf(deadline).remove(key);
+        return true;
+    }
+
+    // Quay wheel đến tick hiện tại, trả về các khóa đã đến hạn (mỗi khóa một lần)
+    public synchronized List<K> advance(long nowMillis) {
+        long now = nowMillis / tickMillis;
+        List<K> due = new ArrayList<>();
+        // Bị trễ quá một vòng thì chỉ cần duyệt mỗi slot một lần
+        long from = Math.max(lastTick + 1, now - slots.size() + 1);
+        for (long tick = from; tick <= now; tick++) {
+            slotOf(tick).entrySet().removeIf(entry -> {
+                if (entry.getValue() <= now) {
+                    due.add(entry.getKey());
+                    deadlines.remove(entry.getKey());
+                    return true;
+                }
+                return false;
+            });
+        }
+        lastTick = Math.max(lastTick, now);
+        return due;
+    }
+
+    public synchronized void clear() {
+        slots.forEach(Map::clear);
+        deadlines.clear();
+    }
+
+    public synchronized int size() {
+        return deadlines.size();
+    }
+
+    private Map<K, Long> slotOf(long tick) {
+        return slots.get((int) Math.floorMod(tick, (long) slots.size()));
+    }
+}
@@ -0,0 +1,28 @@
+package com.project2.BookStore.util;
+
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Tiện ích chạy tác vụ sau khi transaction hiện tại commit thành công.
+ * Dùng để cập nhật các cấu trúc dữ liệu trong bộ nhớ (index, cache...) chỉ khi DB đã thực sự thay đổi.
+ */
+public final class TransactionUtil {
+
+    private TransactionUtil() {
+    }
+
+    // Nếu không có transaction đang hoạt động thì chạy ngay
+    public static void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package com.project2.BookStore.model;
+
+import com.project2.BookStore.model.Order.OrderStatus;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class OrderStatusTest {
+
+    @Test
+    void ordersMoveForwardOneStepAtATime() {
+        assertTrue(OrderStatus.PENDING.canTransitionTo(OrderStatus.CONFIRMED));
+        assertTrue(OrderStatus.CONFIRMED.canTransitionTo(OrderStatus.SHIPPING));
+        assertTrue(OrderStatus.SHIPPING.canTransitionTo(OrderStatus.DELIVERED));
+
+        assertFalse(OrderStatus.PENDING.canTransitionTo(OrderStatus.SHIPPING));
+        assertFalse(OrderStatus.PENDING.canTransitionTo(OrderStatus.DELIVERED));
+        assertFalse(OrderStatus.DELIVERED.canTransitionTo(OrderStatus.SHIPPING));
+    }
+
+    @Test
+    void cancelOnlyBeforeDelivery() {
+        assertTrue(OrderStatus.PENDING.canTransitionTo(OrderStatus.CANCELLED));
+        assertTrue(OrderStatus.CONFIRMED.canTransitionTo(OrderStatus.CANCELLED));
+        assertTrue(OrderStatus.SHIPPING.canTransitionTo(OrderStatus.CANCELLED));
+        assertFalse(OrderStatus.DELIVERED.canTransitionTo(OrderStatus.CANCELLED));
+    }
+
+    @Test
+    void refundedIsTerminal() {
+        for (OrderStatus target : OrderStatus.values()) {
+            assertFalse(OrderStatus.REFUNDED.canTransitionTo(target));
+        }
+    }
+
+    @Test
+    void noStatusTransitionsToItself() {
+        for (OrderStatus status : OrderStatus.values()) {
+            assertFalse(status.canTransitionTo(status), status.name());
+        }
+    }
+
+    @Test
+    void sourcesOfIsDerivedFromCanTransitionTo() {
+        assertEquals(List.of(OrderStatus.DELIVERED, OrderStatus.CANCELLED), OrderStatus.sourcesOf(OrderStatus.REFUNDED));
+        assertEquals(List.of(OrderStatus.PENDING, OrderStatus.CONFIRMED, OrderStatus.SHIPPING),
+            OrderStatus.sourcesOf(OrderStatus.CANCELLED));
+        assertEquals(List.of(OrderStatus.CONFIRMED), OrderStatus.sourcesOf(OrderStatus.SHIPPING));
+        assertTrue(OrderStatus.sourcesOf(OrderStatus.PENDING).isEmpty());
+
+        for (OrderStatus target : OrderStatus.values()) {
+            for (OrderStatus source : OrderStatus.values()) {
+                assertEquals(source.canTransitionTo(target), OrderStatus.sourcesOf(target).contains(source));
+            }
+        }
+    }
+}
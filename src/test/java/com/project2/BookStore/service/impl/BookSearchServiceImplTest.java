@@ -0,0 +1,140 @@
+package com.project2.BookStore.service.impl;
+
+import com.project2.BookStore.dto.SearchFacetsDTO;
+import com.project2.BookStore.model.Book;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class BookSearchServiceImplTest {
+    private static final Pageable FIRST_PAGE = PageRequest.of(0, 10);
+
+    private BookSearchServiceImpl searchService;
+
+    @BeforeEach
+    void setUp() {
+        searchService = new BookSearchServiceImpl();
+        ReflectionTestUtils.setField(searchService, "priceBuckets", new long[]{100000, 50000});
+        ReflectionTestUtils.setField(searchService, "fuzzyThreshold", 0.3);
+        searchService.init();
+
+        // Không có transaction đang chạy nên index() áp dụng ngay
+        searchService.index(book("b1", "Nhà Giả Kim", "Paulo Coelho", 80000, 5, 100, "c1"));
+        searchService.index(book("b2", "Đắc Nhân Tâm", "Dale Carnegie", 120000, 0, 500, "c2"));
+        searchService.index(book("b3", "Giả Kim Thuật", "Nguyễn Văn An", 50000, 3, 10, "c1"));
+        searchService.index(book("b4", "Harry Potter", "J.K. Rowling", 30000, 7, 50, "c3"));
+        searchService.index(book("b5", "Tuyển Tập Truyện Ngắn", "Kim Dung", 200000, 2, 1000, "c3"));
+    }
+
+    @Test
+    void matchesWithoutAccents() {
+        assertEquals(List.of("b2"), search("dac nhan tam", false));
+        assertEquals(List.of("b2"), search("ĐẮC NHÂN TÂM", false));
+    }
+
+    @Test
+    void lastTermMatchesAsPrefix() {
+        assertEquals(List.of("b1"), search("nha gi", false));
+        // Chỉ từ cuối được so khớp theo tiền tố
+        assertTrue(search("nh gia", false).isEmpty());
+    }
+
+    @Test
+    void allTermsMustMatch() {
+        assertTrue(search("nha potter", false).isEmpty());
+    }
+
+    @Test
+    void titleMatchesRankAboveAuthorMatches() {
+        // b5 bán chạy hơn nhưng chỉ khớp ở tên tác giả; b1, b3 cùng điểm nên xếp theo số lượng bán
+        assertEquals(List.of("b1", "b3", "b5"), search("kim", false));
+    }
+
+    @Test
+    void fuzzyModeToleratesTypos() {
+        assertTrue(search("harri poter", false).isEmpty());
+        assertEquals(List.of("b4"), search("harri poter", true));
+    }
+
+    @Test
+    void fuzzyModeIgnoresDissimilarTerms() {
+        assertTrue(search("xyzw", true).isEmpty());
+    }
+
+    @Test
+    void filtersAndExplicitSort() {
+        List<String> inStockByPrice = searchService.search("", null, null, null, true, false,
+            PageRequest.of(0, 10, Sort.by(Sort.Direction.ASC, "price"))).getContent();
+        assertEquals(List.of("b4", "b3", "b1", "b5"), inStockByPrice);
+
+        List<String> categoryInRange = searchService.search("", "c1", 60000L, null, null, false,
+            FIRST_PAGE).getContent();
+        assertEquals(List.of("b1"), categoryInRange);
+    }
+
+    @Test
+    void removedBookIsNoLongerFound() {
+        searchService.remove("b4");
+        assertTrue(search("harry", false).isEmpty());
+        assertTrue(search("harri", true).isEmpty());
+    }
+
+    @Test
+    void facetsBucketPricesByBoundaries() {
+        SearchFacetsDTO facets = searchService.facets("", null, null, null, null, false);
+
+        List<SearchFacetsDTO.PriceRangeFacet> ranges = facets.getPriceRanges();
+        assertEquals(3, ranges.size());
+        // Mốc giá thuộc về khoảng phía trên: 50000 nằm trong [50000, 100000)
+        assertRange(ranges.get(0), 0L, 50000L, 1);
+        assertRange(ranges.get(1), 50000L, 100000L, 2);
+        assertRange(ranges.get(2), 100000L, null, 2);
+        assertEquals(4, facets.getInStock());
+        assertEquals(1, facets.getOutOfStock());
+    }
+
+    @Test
+    void facetsIgnoreTheirOwnFilter() {
+        SearchFacetsDTO facets = searchService.facets("", "c1", null, null, null, false);
+
+        // Đếm danh mục không áp dụng bộ lọc danh mục, các facet khác thì có
+        assertEquals(3, facets.getCategories().size());
+        assertEquals("c1", facets.getCategories().get(0).getCategoryId());
+        assertEquals(2, facets.getCategories().get(0).getCount());
+        assertEquals(2, facets.getInStock());
+        assertEquals(0, facets.getOutOfStock());
+    }
+
+    private List<String> search(String keyword, boolean fuzzy) {
+        return searchService.search(keyword, null, null, null, null, fuzzy, FIRST_PAGE).getContent();
+    }
+
+    private static void assertRange(SearchFacetsDTO.PriceRangeFacet range, Long min, Long max, long count) {
+        assertEquals(min, range.getMinPrice());
+        assertEquals(max, range.getMaxPrice());
+        assertEquals(count, range.getCount());
+    }
+
+    private static Book book(String id, String title, String author, long price, int quantity, int sold,
+                             String categoryId) {
+        Book book = new Book();
+        book.setId(id);
+        book.setMainText(title);
+        book.setAuthor(author);
+        book.setPrice(price);
+        book.setQuantity(quantity);
+        book.setSold(sold);
+        book.setCategoryId(categoryId);
+        book.setCreatedAt(LocalDateTime.of(2024, 1, 1, 0, 0));
+        return book;
+    }
+}
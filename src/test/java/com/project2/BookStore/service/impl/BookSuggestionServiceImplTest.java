@@ -0,0 +1,73 @@
+package com.project2.BookStore.service.impl;
+
+import com.project2.BookStore.dto.BookSuggestionDTO;
+import com.project2.BookStore.model.Book;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class BookSuggestionServiceImplTest {
+
+    private BookSuggestionServiceImpl suggestionService;
+
+    @BeforeEach
+    void setUp() {
+        suggestionService = new BookSuggestionServiceImpl();
+        // Không có transaction đang chạy nên bookSaved() áp dụng ngay
+        suggestionService.bookSaved(book("b1", "Nhà Giả Kim", "Paulo Coelho", 100));
+        suggestionService.bookSaved(book("b2", "Người Già Và Biển Cả", "Ernest Hemingway", 20));
+        suggestionService.bookSaved(book("b3", "Nhật Ký Trong Tù", "Hồ Chí Minh", 5));
+        suggestionService.bookSaved(book("b4", "Nỗi Buồn Chiến Tranh", "Bảo Ninh", 300));
+    }
+
+    @Test
+    void shortPrefixRanksAllMatchesBySold() {
+        // "noi buon..." và "ninh" xếp sau cùng theo thứ tự chữ cái nhưng bán chạy nhất; cùng sold thì theo tên
+        assertEquals(List.of("Bảo Ninh", "Nỗi Buồn Chiến Tranh", "Nhà Giả Kim"), texts("n", 3));
+    }
+
+    @Test
+    void matchesFromAnyWordWithoutAccents() {
+        assertEquals(List.of("Nhà Giả Kim", "Người Già Và Biển Cả"), texts("gia", 10));
+        assertEquals(List.of("Nhà Giả Kim"), texts("gia k", 10));
+    }
+
+    @Test
+    void authorSuggestionSumsSoldOfAllBooks() {
+        suggestionService.bookSaved(book("b5", "Chín Bỏ Làm Mười", "Bảo Ninh", 50));
+
+        List<BookSuggestionDTO> suggestions = suggestionService.suggest("bao ninh", 10);
+        assertEquals(1, suggestions.size());
+        assertEquals("author", suggestions.get(0).getType());
+        assertEquals(350, suggestions.get(0).getSold());
+    }
+
+    @Test
+    void soldChangesAndDeletesAreApplied() {
+        suggestionService.applySoldChange("b3", 1000);
+        assertEquals("Nhật Ký Trong Tù", texts("nh", 1).get(0));
+
+        suggestionService.bookDeleted("b3");
+        assertTrue(texts("nhat", 10).isEmpty());
+    }
+
+    private List<String> texts(String query, int limit) {
+        return suggestionService.suggest(query, limit).stream()
+            .map(BookSuggestionDTO::getText)
+            .collect(Collectors.toList());
+    }
+
+    private static Book book(String id, String title, String author, int sold) {
+        Book book = new Book();
+        book.setId(id);
+        book.setMainText(title);
+        book.setAuthor(author);
+        book.setSold(sold);
+        return book;
+    }
+}
@@ -0,0 +1,170 @@
+package com.project2.BookStore.service.impl;
+
+import com.project2.BookStore.service.CartStore;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.startsWith;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class WriteBehindCartStoreTest {
+    private static final String USER = "user-1";
+
+    private JdbcTemplate jdbcTemplate;
+    private WriteBehindCartStore cartStore;
+
+    @BeforeEach
+    void setUp() {
+        jdbcTemplate = mock(JdbcTemplate.class);
+        cartStore = new WriteBehindCartStore();
+        ReflectionTestUtils.setField(cartStore, "jdbcTemplate", jdbcTemplate);
+        ReflectionTestUtils.setField(cartStore, "transactionTemplate",
+            new TransactionTemplate(mock(PlatformTransactionManager.class)));
+        ReflectionTestUtils.setField(cartStore, "stripeCount", 4);
+        ReflectionTestUtils.setField(cartStore, "idleMillis", 3_600_000L);
+        ReflectionTestUtils.setField(cartStore, "maxFailures", 2);
+        cartStore.init();
+    }
+
+    @Test
+    void flushWritesDirtyLinesOnce() {
+        cartStore.put(USER, new CartStore.Line("book-1", 2, 10000));
+        cartStore.flushAll();
+        cartStore.flushAll();
+
+        verify(jdbcTemplate, times(1)).batchUpdate(startsWith("INSERT INTO cart_items"), anyList());
+    }
+
+    @Test
+    void removedLineIsWrittenAsDelete() {
+        cartStore.put(USER, new CartStore.Line("book-1", 2, 10000));
+        cartStore.flushAll();
+        cartStore.remove(USER, "book-1");
+        cartStore.flushAll();
+
+        verify(jdbcTemplate, times(1)).batchUpdate(startsWith("DELETE FROM cart_items"), anyList());
+    }
+
+    @Test
+    void failedWriteKeepsLinesDirtyAndInMemory() {
+        when(jdbcTemplate.batchUpdate(anyString(), anyList()))
+            .thenThrow(new QueryTimeoutException("timeout"))
+            .thenReturn(new int[]{1});
+        ReflectionTestUtils.setField(cartStore, "idleMillis", -1L);
+        cartStore.put(USER, new CartStore.Line("book-1", 2, 10000));
+
+        // Giỏ còn dirty không bị bỏ khỏi bộ nhớ dù đã quá hạn idle
+        cartStore.flushAll();
+        cartStore.evict(USER);
+        assertEquals(2, cartStore.getLine(USER, "book-1").quantity());
+        verify(jdbcTemplate, times(1)).query(anyString(), any(RowCallbackHandler.class), eq(USER));
+
+        cartStore.flushAll();
+        verify(jdbcTemplate, times(2)).batchUpdate(startsWith("INSERT INTO cart_items"), anyList());
+    }
+
+    @Test
+    void cleanCartIsEvictedAndReloadedOnNextAccess() {
+        ReflectionTestUtils.setField(cartStore, "idleMillis", -1L);
+        cartStore.put(USER, new CartStore.Line("book-1", 2, 10000));
+        cartStore.flushAll();
+        cartStore.getCart(USER);
+
+        verify(jdbcTemplate, times(2)).query(anyString(), any(RowCallbackHandler.class), eq(USER));
+    }
+
+    @Test
+    void lineRejectedByDatabaseIsDroppedAfterMaxFailures() {
+        when(jdbcTemplate.batchUpdate(anyString(), anyList()))
+            .thenThrow(new DataIntegrityViolationException("bad row"));
+        cartStore.put(USER, new CartStore.Line("book-1", 2, 10000));
+
+        cartStore.flushAll();
+        // Lần lỗi thứ max-failures: ghi lại từng dòng, dòng vẫn lỗi bị bỏ và giỏ hàng được nạp lại từ cart_items
+        cartStore.flushAll();
+        cartStore.flushAll();
+
+        verify(jdbcTemplate, times(3)).batchUpdate(anyString(), anyList());
+        assertNull(cartStore.getLine(USER, "book-1"));
+        verify(jdbcTemplate, times(2)).query(anyString(), any(RowCallbackHandler.class), eq(USER));
+    }
+
+    @Test
+    void computeIsAtomicPerUser() throws InterruptedException {
+        int threads = 8;
+        int addsPerThread = 500;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        for (int i = 0; i < threads; i++) {
+            executor.submit(() -> {
+                start.await();
+                for (int j = 0; j < addsPerThread; j++) {
+                    cartStore.compute(USER, "book-1", (cart, existing) ->
+                        new CartStore.Line("book-1", (existing != null ? existing.quantity() : 0) + 1, 10000));
+                }
+                return null;
+            });
+        }
+        start.countDown();
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(30, TimeUnit.SECONDS));
+
+        assertEquals(threads * addsPerThread, cartStore.getLine(USER, "book-1").quantity());
+    }
+
+    @Test
+    void failedComputeLeavesCartUnchanged() {
+        cartStore.put(USER, new CartStore.Line("book-1", 2, 10000));
+        assertThrows(IllegalStateException.class, () -> cartStore.compute(USER, "book-1", (cart, existing) -> {
+            throw new IllegalStateException("vượt quá tồn kho");
+        }));
+
+        assertEquals(2, cartStore.getLine(USER, "book-1").quantity());
+    }
+
+    @Test
+    void computeCartMarksOnlyChangedLines() {
+        cartStore.put(USER, new CartStore.Line("book-1", 2, 10000));
+        cartStore.put(USER, new CartStore.Line("book-2", 1, 20000));
+        cartStore.flushAll();
+
+        List<CartStore.Line> updated = cartStore.computeCart(USER, current -> {
+            List<CartStore.Line> lines = new ArrayList<>(current);
+            lines.removeIf(line -> line.bookId().equals("book-2"));
+            lines.add(new CartStore.Line("book-3", 4, 5000));
+            return lines;
+        });
+        cartStore.flushAll();
+
+        assertEquals(List.of("book-1", "book-3"), updated.stream().map(CartStore.Line::bookId).toList());
+        assertNull(cartStore.getLine(USER, "book-2"));
+        // Lần ghi thứ hai chỉ gồm book-3 (upsert) và book-2 (delete), book-1 không đổi
+        verify(jdbcTemplate, times(2)).batchUpdate(startsWith("INSERT INTO cart_items"), anyList());
+        verify(jdbcTemplate, times(1)).batchUpdate(startsWith("DELETE FROM cart_items"), anyList());
+    }
+}
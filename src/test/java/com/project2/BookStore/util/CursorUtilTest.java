@@ -0,0 +1,40 @@
+package com.project2.BookStore.util;
+
+import com.project2.BookStore.exception.BadRequestException;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class CursorUtilTest {
+
+    @Test
+    void encodeDecodeRoundTrip() {
+        String cursor = CursorUtil.encode("2024-05-01T10:15:30", "c0ffee-1");
+        assertArrayEquals(new String[]{"2024-05-01T10:15:30", "c0ffee-1"}, CursorUtil.decode(cursor, 2));
+    }
+
+    @Test
+    void roundTripKeepsUnicodeAndEmptyParts() {
+        String cursor = CursorUtil.encode("Nhà Giả Kim", "", "id-1");
+        assertArrayEquals(new String[]{"Nhà Giả Kim", "", "id-1"}, CursorUtil.decode(cursor, 3));
+    }
+
+    @Test
+    void encodedCursorIsUrlSafe() {
+        String cursor = CursorUtil.encode("???>>>", "~~~");
+        assertFalse(cursor.contains("+") || cursor.contains("/") || cursor.contains("="));
+    }
+
+    @Test
+    void decodeRejectsWrongNumberOfParts() {
+        String cursor = CursorUtil.encode("a", "b");
+        assertThrows(BadRequestException.class, () -> CursorUtil.decode(cursor, 3));
+    }
+
+    @Test
+    void decodeRejectsInvalidBase64() {
+        assertThrows(BadRequestException.class, () -> CursorUtil.decode("không phải base64!", 2));
+    }
+}
@@ -0,0 +1,79 @@
+package com.project2.BookStore.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TimerWheelTest {
+    private static final long TICK = 1000;
+
+    @Test
+    void keyIsDueAtItsTickNotBefore() {
+        TimerWheel<String> wheel = new TimerWheel<>(8, TICK, 0);
+        wheel.schedule("order-1", 3_500);
+
+        // Hạn được làm tròn lên tick kế tiếp (tick 4)
+        assertTrue(wheel.advance(3_999).isEmpty());
+        assertEquals(List.of("order-1"), wheel.advance(4_000));
+        assertEquals(0, wheel.size());
+    }
+
+    @Test
+    void overdueKeyIsDueAtNextTick() {
+        TimerWheel<String> wheel = new TimerWheel<>(8, TICK, 5_000);
+        wheel.schedule("order-1", 1_000);
+
+        assertTrue(wheel.advance(5_999).isEmpty());
+        assertEquals(List.of("order-1"), wheel.advance(6_000));
+    }
+
+    @Test
+    void keyFurtherThanOneRevolutionWaitsForItsTick() {
+        TimerWheel<String> wheel = new TimerWheel<>(4, TICK, 0);
+        // Tick 10 nằm chung slot với tick 2 và 6
+        wheel.schedule("order-1", 10_000);
+
+        assertTrue(wheel.advance(2_000).isEmpty());
+        assertTrue(wheel.advance(6_000).isEmpty());
+        assertEquals(List.of("order-1"), wheel.advance(10_000));
+    }
+
+    @Test
+    void lateAdvanceCollectsEveryDueKeyOnce() {
+        TimerWheel<String> wheel = new TimerWheel<>(4, TICK, 0);
+        wheel.schedule("order-1", 1_000);
+        wheel.schedule("order-2", 3_000);
+        wheel.schedule("order-3", 20_000);
+
+        // Trễ hơn một vòng: mỗi slot chỉ được duyệt một lần
+        List<String> due = wheel.advance(9_000);
+        assertEquals(2, due.size());
+        assertTrue(due.containsAll(List.of("order-1", "order-2")));
+        assertTrue(wheel.advance(9_000).isEmpty());
+        assertEquals(1, wheel.size());
+    }
+
+    @Test
+    void rescheduleReplacesPreviousDeadline() {
+        TimerWheel<String> wheel = new TimerWheel<>(8, TICK, 0);
+        wheel.schedule("order-1", 2_000);
+        wheel.schedule("order-1", 5_000);
+
+        assertTrue(wheel.advance(4_000).isEmpty());
+        assertEquals(List.of("order-1"), wheel.advance(5_000));
+    }
+
+    @Test
+    void unscheduledKeyIsNeverDue() {
+        TimerWheel<String> wheel = new TimerWheel<>(8, TICK, 0);
+        wheel.schedule("order-1", 2_000);
+
+        assertTrue(wheel.unschedule("order-1"));
+        assertFalse(wheel.unschedule("order-1"));
+        assertTrue(wheel.advance(10_000).isEmpty());
+    }
+}
@@ -0,0 +1,39 @@
+package com.project2.BookStore.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class VietnameseTextUtilTest {
+
+    @Test
+    void foldRemovesAccentsAndLowercases() {
+        assertEquals("sach dac nhan tam", VietnameseTextUtil.fold("Sách Đắc Nhân Tâm"));
+        assertEquals("nguoi o ben kia", VietnameseTextUtil.fold("NGƯỜI Ở BÊN KIA"));
+    }
+
+    @Test
+    void foldMapsDStrokeToD() {
+        assertEquals("dd", VietnameseTextUtil.fold("Đđ"));
+    }
+
+    @Test
+    void foldTreatsNullAsEmpty() {
+        assertEquals("", VietnameseTextUtil.fold(null));
+    }
+
+    @Test
+    void tokenizeSplitsOnNonWordCharacters() {
+        assertEquals(List.of("nha", "gia", "kim", "2024"),
+            VietnameseTextUtil.tokenize("  Nhà-Giả_Kim!! (2024) "));
+    }
+
+    @Test
+    void tokenizeReturnsEmptyListForBlankInput() {
+        assertTrue(VietnameseTextUtil.tokenize("  ...  ").isEmpty());
+        assertTrue(VietnameseTextUtil.tokenize(null).isEmpty());
+    }
+}